@@ -0,0 +1,68 @@
+package main.java;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Measures each front-end phase on its own
+// The input of every phase is prepared once, outside of the measurement
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrontEndBenchmark {
+    @Param({"FIB", "LOOP", "STRINGS", "CLOSURES", "ARRAYS", "MAPS", "NESTING"})
+    Workload workload;
+
+    private final Reporter reporter = new Reporter(null, null);
+
+    private List<Token> tokens;
+    private List<Stmt> statements;
+
+    @Setup
+    public void setUp() {
+        tokens = new Scanner(workload.source, reporter).scanTokens();
+        statements = new Parser(tokens, reporter).parse();
+        new Resolver(reporter).resolve(statements);
+
+        if (reporter.hadError) {
+            throw new IllegalStateException("Workload " + workload + " does not compile.");
+        }
+    }
+
+    @Benchmark
+    public List<Token> scan() {
+        return new Scanner(workload.source, reporter).scanTokens();
+    }
+
+    @Benchmark
+    public List<Stmt> parse() {
+        return new Parser(tokens, reporter).parse();
+    }
+
+    // Resolving again only overwrites the same resolution data
+    @Benchmark
+    public List<Stmt> resolve() {
+        new Resolver(reporter).resolve(statements);
+        return statements;
+    }
+
+    // The optimizer never modifies its input, so it can be run repeatedly
+    @Benchmark
+    public List<Stmt> optimize() {
+        return Optimizer.standard().optimize(statements);
+    }
+}
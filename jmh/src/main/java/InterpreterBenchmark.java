@@ -0,0 +1,83 @@
+package main.java;
+
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Measures running already resolved scripts, for every engine
+// Each engine keeps its globals between invocations, which the workloads
+// simply redefine
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterpreterBenchmark {
+    @Param({"FIB", "LOOP", "STRINGS", "CLOSURES", "ARRAYS", "MAPS", "NESTING"})
+    Workload workload;
+
+    @Param({"tree", "vm", "nodes"})
+    String engine;
+
+    private final Reporter reporter = new Reporter(null, null);
+    private final MemoCache[] memoCaches = new MemoCache[0];
+
+    private Stmt.Block program;
+    private List<Stmt> statements;
+    private Interpreter interpreter;
+    private VM vm;
+    private VmFunction script;
+    private NodeInterpreter nodeInterpreter;
+
+    @Setup
+    public void setUp() {
+        program = CynchScript.resolve(new Scanner(workload.source, reporter), null, reporter);
+        if (program == null) {
+            throw new IllegalStateException("Workload " + workload + " does not compile.");
+        }
+        statements = program.statements;
+
+        // The workloads do not print
+        Output output = new Output(Writer.nullWriter(), true);
+        interpreter = new Interpreter(output, reporter);
+        vm = new VM(output, reporter);
+        script = new BytecodeCompiler(vm.globals, reporter, memoCaches).compile(statements);
+        nodeInterpreter = new NodeInterpreter(output, reporter);
+
+        if (reporter.hadError) {
+            throw new IllegalStateException("Workload " + workload + " does not compile.");
+        }
+    }
+
+    @Benchmark
+    public void interpret() {
+        switch (engine) {
+            case "vm":
+                vm.interpret(script);
+                break;
+            case "nodes":
+                nodeInterpreter.interpret(statements, memoCaches);
+                break;
+            default:
+                interpreter.interpret(program, memoCaches);
+                break;
+        }
+
+        if (reporter.hadRuntimeError) {
+            throw new IllegalStateException("Workload " + workload + " failed on " + engine + ".");
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package main.java;
+
+// Representative scripts for the benchmarks
+// None of them print, so the measurements are not dominated by output
+public enum Workload {
+    // Call-heavy recursion
+    FIB(
+        "fun fib(n) {\n" +
+        "  if (n < 2) return n;\n" +
+        "  return fib(n - 2) + fib(n - 1);\n" +
+        "}\n" +
+        "var result = fib(20);\n"),
+
+    // Arithmetic and comparisons on locals in a tight loop
+    LOOP(
+        "{\n" +
+        "  var sum = 0;\n" +
+        "  var i = 0;\n" +
+        "  while (i < 100000) {\n" +
+        "    sum = sum + i * 2;\n" +
+        "    i = i + 1;\n" +
+        "  }\n" +
+        "}\n"),
+
+    // Repeated string concatenation, including number to string conversion
+    STRINGS(
+        "var text = \"\";\n" +
+        "for (var i = 0; i < 1000; i = i + 1) {\n" +
+        "  text = text + \"item \" + i + \", \";\n" +
+        "}\n"),
+
+    // Creating closures and calling them through captured state
+    CLOSURES(
+        "fun makeCounter() {\n" +
+        "  var count = 0;\n" +
+        "  fun counter() {\n" +
+        "    count = count + 1;\n" +
+        "    return count;\n" +
+        "  }\n" +
+        "  return counter;\n" +
+        "}\n" +
+        "var total = 0;\n" +
+        "for (var i = 0; i < 2000; i = i + 1) {\n" +
+        "  var counter = makeCounter();\n" +
+        "  counter();\n" +
+        "  counter();\n" +
+        "  total = total + counter();\n" +
+        "}\n"),
+
+    // Filling a numeric array and summing it by index
+    ARRAYS(
+        "var values = [];\n" +
+        "for (var i = 0; i < 10000; i = i + 1) {\n" +
+        "  push(values, i * 0.5);\n" +
+        "}\n" +
+        "var total = 0;\n" +
+        "for (var i = 0; i < length(values); i = i + 1) {\n" +
+        "  values[i] = values[i] * 2;\n" +
+        "  total = total + values[i];\n" +
+        "}\n"),
+
+    // Counting in a map by number and by string keys
+    MAPS(
+        "var counts = {};\n" +
+        "for (var i = 0; i < 10000; i = i + 1) {\n" +
+        "  var key = i / 4;\n" +
+        "  if (counts[key] == nil) counts[key] = 0;\n" +
+        "  counts[key] = counts[key] + 1;\n" +
+        "  counts[\"total\"] = i;\n" +
+        "}\n"),
+
+    // Variables read from far up a chain of nested scopes
+    NESTING(nestedScopes(64, 2000));
+
+    final String source;
+
+    Workload(String source) {
+        this.source = source;
+    }
+
+    private static String nestedScopes(int depth, int iterations) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            source.append("{ var v").append(i).append(" = ").append(i).append(";\n");
+        }
+
+        source.append("var acc = 0;\n");
+        source.append("for (var i = 0; i < ").append(iterations).append("; i = i + 1) {\n");
+        source.append("  acc = acc + v0 + v").append(depth / 2).append(" + v").append(depth - 1).append(";\n");
+        source.append("}\n");
+
+        for (int i = 0; i < depth; i++) {
+            source.append("}\n");
+        }
+
+        return source.toString();
+    }
+}
@@ -0,0 +1,176 @@
+package main.java;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.CodeSource;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Keeps the resolved statements of scripts on disk, so that running an
+// unchanged script again skips scanning, parsing, resolving and optimizing
+// Entries are named by a hash of the source, of the interpreter's own code,
+// the format version and whether the script was optimized, so a changed
+// script or a new build never finds a stale entry. A cache that cannot be
+// read or written is ignored.
+class AstCache {
+    // Bump whenever the layout of an entry changes
+    // Changes to what the front end produces are covered by the build's hash
+    private static final int FORMAT_VERSION = 6;
+    private static final int MAGIC = 0x43594e43; // "CYNC"
+
+    // Hashed once, the first time an entry is named
+    private static byte[] build;
+
+    private final Path directory;
+    private final boolean optimized;
+
+    // The directory is created when the first entry is stored
+    AstCache(Path directory, boolean optimized) {
+        this.directory = directory;
+        this.optimized = optimized;
+    }
+
+    // $XDG_CACHE_HOME/cynch, or ~/.cache/cynch
+    static Path defaultDirectory() {
+        String cacheHome = System.getenv("XDG_CACHE_HOME");
+        if (cacheHome != null && !cacheHome.isEmpty()) return Paths.get(cacheHome, "cynch");
+
+        return Paths.get(System.getProperty("user.home"), ".cache", "cynch");
+    }
+
+    // Names the entry of the script at the given path, from its content
+    String key(Path script) throws IOException {
+        MessageDigest digest = digest();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(script), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+
+        return key(digest);
+    }
+
+    // A digest to read a script's content through, for naming its entry
+    MessageDigest digest() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException error) {
+            throw new IllegalStateException(error);
+        }
+
+        digest.update(build());
+        digest.update((byte)FORMAT_VERSION);
+        digest.update((byte)(optimized ? 1 : 0));
+        return digest;
+    }
+
+    // A hash of the jar or class directory the interpreter was loaded from
+    // If it cannot be read, it is random, so that no entry is ever reused
+    private static synchronized byte[] build() {
+        if (build != null) return build;
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            CodeSource source = AstCache.class.getProtectionDomain().getCodeSource();
+            Path code = Paths.get(source.getLocation().toURI());
+
+            if (Files.isDirectory(code)) {
+                List<Path> files;
+                try (Stream<Path> walk = Files.walk(code)) {
+                    files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+                }
+                for (Path file : files) {
+                    digest.update(code.relativize(file).toString().getBytes());
+                    digest.update(Files.readAllBytes(file));
+                }
+            } else {
+                digest.update(Files.readAllBytes(code));
+            }
+
+            build = digest.digest();
+        } catch (Exception error) {
+            build = new byte[32];
+            new SecureRandom().nextBytes(build);
+        }
+
+        return build;
+    }
+
+    // Names an entry from a digest that has read the whole script
+    String key(MessageDigest digest) {
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(String.format("%02x", b));
+        }
+        return key.toString();
+    }
+
+    // Returns the cached script, or null if there is none
+    // The script is a block holding the top-level statements, whose frameSize
+    // is the size of the script's frame, callSites its number of calls and
+    // globals the names its global variables are numbered by
+    Stmt.Block load(String key) {
+        Path entry = directory.resolve(key + ".ast");
+        if (!Files.isRegularFile(entry)) return null;
+
+        try {
+            ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(entry));
+            if (in.getInt() != MAGIC || in.getInt() != FORMAT_VERSION) return null;
+
+            int frameSize = in.getInt();
+            int callSites = in.getInt();
+            AstReader reader = new AstReader(in);
+            Stmt.Block script = new Stmt.Block(reader.read());
+            script.frameSize = frameSize;
+            script.callSites = callSites;
+            script.globals = reader.readNames();
+            return script;
+        } catch (IOException | RuntimeException error) {
+            // A damaged entry is compiled again and then replaced
+            return null;
+        }
+    }
+
+    void store(String key, Stmt.Block script) {
+        ByteBuffer header = ByteBuffer.allocate(16);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(script.frameSize)
+              .putInt(script.callSites).flip();
+        ByteBuffer body = new AstWriter().write(script.statements, script.globals);
+
+        // Written to a temporary file first, so that another run never reads
+        // half an entry
+        Path temporary = null;
+        try {
+            Files.createDirectories(directory);
+            temporary = Files.createTempFile(directory, key, ".tmp");
+
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while (body.hasRemaining()) {
+                    channel.write(new ByteBuffer[] {header, body});
+                }
+            }
+
+            Files.move(temporary, directory.resolve(key + ".ast"),
+                       StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException error) {
+            // Running the script does not depend on the cache
+            try {
+                if (temporary != null) Files.deleteIfExists(temporary);
+            } catch (IOException ignored) {
+                // Left for the next store to replace
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package main.java;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static main.java.AstWriter.*;
+
+// Reads back the statements AstWriter has written, with their resolution data
+// Reads straight from the buffer, so the only objects made are the nodes,
+// their tokens and each distinct String once
+class AstReader {
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+    private final ByteBuffer in;
+    private final List<String> strings = new ArrayList<>();
+
+    AstReader(ByteBuffer in) {
+        this.in = in;
+    }
+
+    List<Stmt> read() {
+        return readStatements();
+    }
+
+    // The global names written after the statements
+    List<String> readNames() {
+        int count = in.getInt();
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(readString());
+        }
+        return names;
+    }
+
+    private List<Stmt> readStatements() {
+        int count = in.getInt();
+        List<Stmt> statements = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            statements.add(readStmt());
+        }
+        return statements;
+    }
+
+    private Stmt readStmt() {
+        byte tag = in.get();
+
+        switch (tag) {
+            case NONE:
+                return null;
+            case BLOCK: {
+                Stmt.Block stmt = new Stmt.Block(readStatements());
+                stmt.frameSize = in.getInt();
+                return stmt;
+            }
+            case BREAK:
+                return new Stmt.Break();
+            case EXPRESSION:
+                return new Stmt.Expression(readExpr());
+            case FOR: {
+                Stmt.For stmt = new Stmt.For(readStmt(), readExpr(), readExpr(), readStmt());
+                stmt.frameSize = in.getInt();
+                stmt.counted = readBoolean();
+                return stmt;
+            }
+            case IF:
+                return new Stmt.If(readExpr(), readStmt(), readStmt());
+            case FUNCTION:
+                return readFunction();
+            case PRINT:
+                return new Stmt.Print(readExpr());
+            case RETURN: {
+                Stmt.Return stmt = new Stmt.Return(readToken(), readExpr());
+                stmt.tailCall = readBoolean();
+                return stmt;
+            }
+            case VAR: {
+                Stmt.Var stmt = new Stmt.Var(readToken(), readExpr());
+                stmt.slot = in.getInt();
+                stmt.index = in.getInt();
+                stmt.captured = readBoolean();
+                return stmt;
+            }
+            case WHILE:
+                return new Stmt.While(readExpr(), readStmt());
+            default:
+                throw new IllegalStateException("Unknown statement tag " + tag + ".");
+        }
+    }
+
+    private Stmt.Function readFunction() {
+        Token name = readToken();
+        int arity = in.getInt();
+        List<Token> params = new ArrayList<>(arity);
+        for (int i = 0; i < arity; i++) {
+            params.add(readToken());
+        }
+
+        Stmt.Function stmt = new Stmt.Function(name, params, readStatements(), readToken());
+        stmt.slot = in.getInt();
+        stmt.frameSize = in.getInt();
+        stmt.index = in.getInt();
+        stmt.captured = readBoolean();
+        stmt.localCount = in.getInt();
+
+        stmt.capturedParams = new boolean[arity];
+        for (int i = 0; i < arity; i++) {
+            stmt.capturedParams[i] = readBoolean();
+        }
+
+        stmt.captures = new int[in.getInt()];
+        for (int i = 0; i < stmt.captures.length; i++) {
+            stmt.captures[i] = in.getInt();
+        }
+
+        return stmt;
+    }
+
+    private Expr readExpr() {
+        byte tag = in.get();
+
+        switch (tag) {
+            case NONE:
+                return null;
+            case ASSIGN: {
+                Expr.Assign expr = new Expr.Assign(readToken(), readExpr());
+                expr.depth = in.getInt();
+                expr.slot = in.getInt();
+                expr.index = in.getInt();
+                expr.upvalue = in.getInt();
+                expr.global = in.getInt();
+                return expr;
+            }
+            case BINARY:
+                return new Expr.Binary(readExpr(), readToken(), readExpr());
+            case CALL: {
+                Expr callee = readExpr();
+                Token paren = readToken();
+                int count = in.getInt();
+                List<Expr> arguments = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    arguments.add(readExpr());
+                }
+                Expr.Call expr = new Expr.Call(callee, paren, arguments);
+                expr.site = in.getInt();
+                return expr;
+            }
+            case GROUPING:
+                return new Expr.Grouping(readExpr());
+            case LITERAL:
+                return new Expr.Literal(readValue());
+            case LOGICAL:
+                return new Expr.Logical(readExpr(), readToken(), readExpr());
+            case UNARY:
+                return new Expr.Unary(readToken(), readExpr());
+            case VARIABLE: {
+                Expr.Variable expr = new Expr.Variable(readToken());
+                expr.depth = in.getInt();
+                expr.slot = in.getInt();
+                expr.index = in.getInt();
+                expr.upvalue = in.getInt();
+                expr.global = in.getInt();
+                return expr;
+            }
+            case AWAIT:
+                return new Expr.Await(readToken(), readExpr());
+            case SPAWN:
+                return new Expr.Spawn(readToken(), (Expr.Call)readExpr());
+            case ARRAY: {
+                Token bracket = readToken();
+                int count = in.getInt();
+                List<Expr> elements = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    elements.add(readExpr());
+                }
+                return new Expr.Array(bracket, elements);
+            }
+            case INDEX:
+                return new Expr.Index(readExpr(), readToken(), readExpr());
+            case SET_INDEX:
+                return new Expr.SetIndex(readExpr(), readToken(), readExpr(), readExpr());
+            case MAP: {
+                Token brace = readToken();
+                int count = in.getInt();
+                List<Expr> keys = new ArrayList<>(count);
+                List<Expr> values = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    keys.add(readExpr());
+                    values.add(readExpr());
+                }
+                return new Expr.Map(brace, keys, values);
+            }
+            default:
+                throw new IllegalStateException("Unknown expression tag " + tag + ".");
+        }
+    }
+
+    private Token readToken() {
+        int type = in.getInt();
+        if (type < 0) return null;
+
+        return new Token(TOKEN_TYPES[type], readString(), readValue(), in.getInt());
+    }
+
+    private Object readValue() {
+        byte tag = in.get();
+
+        switch (tag) {
+            case NIL: return null;
+            case FALSE: return false;
+            case TRUE: return true;
+            case NUMBER: return in.getDouble();
+            case STRING: return readString();
+            default:
+                throw new IllegalStateException("Unknown value tag " + tag + ".");
+        }
+    }
+
+    private String readString() {
+        int index = in.getInt();
+        if (index >= 0) return strings.get(index);
+
+        int length = in.getInt();
+        String string = new String(in.array(), in.arrayOffset() + in.position(), length,
+                                   StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        strings.add(string);
+        return string;
+    }
+
+    private boolean readBoolean() {
+        return in.get() != 0;
+    }
+}
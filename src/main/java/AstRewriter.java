@@ -0,0 +1,303 @@
+package main.java;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Base class of the optimizer passes
+// Rewrites children first and rebuilds a node only if one of them changed,
+// carrying over the data the Resolver has already stored in it
+// A pass overrides the visit methods it cares about, calls super to rewrite
+// the children and then simplifies the result. Returning null from a
+// statement removes it.
+abstract class AstRewriter implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+    // How many nodes the pass has visited, which is the size of its input
+    int nodes = 0;
+
+    List<Stmt> rewrite(List<Stmt> statements) {
+        List<Stmt> rewritten = new ArrayList<>(statements.size());
+        boolean changed = false;
+
+        for (Stmt statement : statements) {
+            Stmt result = rewrite(statement);
+            if (result != null) rewritten.add(result);
+            changed |= result != statement;
+        }
+
+        return changed ? rewritten : statements;
+    }
+
+    Stmt rewrite(Stmt stmt) {
+        nodes++;
+        return stmt.accept(this);
+    }
+
+    Expr rewrite(Expr expr) {
+        nodes++;
+        return expr.accept(this);
+    }
+
+    // Where a statement is required, a removed one becomes an empty block
+    private Stmt rewriteRequired(Stmt stmt) {
+        Stmt result = rewrite(stmt);
+        return result != null ? result : new Stmt.Block(new ArrayList<>());
+    }
+
+    @Override
+    public Stmt visitBlockStmt(Stmt.Block stmt) {
+        List<Stmt> statements = rewrite(stmt.statements);
+        if (statements == stmt.statements) return stmt;
+
+        Stmt.Block block = new Stmt.Block(statements);
+        block.frameSize = stmt.frameSize;
+        return block;
+    }
+
+    @Override
+    public Stmt visitBreakStmt(Stmt.Break stmt) {
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitExpressionStmt(Stmt.Expression stmt) {
+        Expr expression = rewrite(stmt.expression);
+        if (expression == stmt.expression) return stmt;
+
+        return new Stmt.Expression(expression);
+    }
+
+    @Override
+    public Stmt visitForStmt(Stmt.For stmt) {
+        Stmt initializer = stmt.initializer == null ? null : rewrite(stmt.initializer);
+        Expr condition = rewrite(stmt.condition);
+        Expr increment = stmt.increment == null ? null : rewrite(stmt.increment);
+        Stmt body = rewriteRequired(stmt.body);
+
+        if (initializer == stmt.initializer && condition == stmt.condition &&
+            increment == stmt.increment && body == stmt.body) {
+            return stmt;
+        }
+
+        Stmt.For loop = new Stmt.For(initializer, condition, increment, body);
+        loop.frameSize = stmt.frameSize;
+        loop.counted = stmt.counted;
+        return loop;
+    }
+
+    @Override
+    public Stmt visitFunctionStmt(Stmt.Function stmt) {
+        List<Stmt> body = rewrite(stmt.body);
+        if (body == stmt.body) return stmt;
+
+        Stmt.Function function = new Stmt.Function(stmt.name, stmt.params, body, stmt.memo);
+        function.slot = stmt.slot;
+        function.frameSize = stmt.frameSize;
+        function.index = stmt.index;
+        function.captured = stmt.captured;
+        function.localCount = stmt.localCount;
+        function.capturedParams = stmt.capturedParams;
+        function.captures = stmt.captures;
+        function.memoIndex = stmt.memoIndex;
+        return function;
+    }
+
+    @Override
+    public Stmt visitIfStmt(Stmt.If stmt) {
+        Expr condition = rewrite(stmt.condition);
+        Stmt thenBranch = rewriteRequired(stmt.thenBranch);
+        Stmt elseBranch = stmt.elseBranch == null ? null : rewrite(stmt.elseBranch);
+
+        if (condition == stmt.condition && thenBranch == stmt.thenBranch &&
+            elseBranch == stmt.elseBranch) {
+            return stmt;
+        }
+
+        return new Stmt.If(condition, thenBranch, elseBranch);
+    }
+
+    @Override
+    public Stmt visitPrintStmt(Stmt.Print stmt) {
+        Expr expression = rewrite(stmt.expression);
+        if (expression == stmt.expression) return stmt;
+
+        return new Stmt.Print(expression);
+    }
+
+    @Override
+    public Stmt visitReturnStmt(Stmt.Return stmt) {
+        if (stmt.value == null) return stmt;
+
+        Expr value = rewrite(stmt.value);
+        if (value == stmt.value) return stmt;
+
+        Stmt.Return result = new Stmt.Return(stmt.keyword, value);
+        result.tailCall = stmt.tailCall && value instanceof Expr.Call;
+        return result;
+    }
+
+    @Override
+    public Stmt visitVarStmt(Stmt.Var stmt) {
+        if (stmt.initializer == null) return stmt;
+
+        Expr initializer = rewrite(stmt.initializer);
+        if (initializer == stmt.initializer) return stmt;
+
+        Stmt.Var var = new Stmt.Var(stmt.name, initializer);
+        var.slot = stmt.slot;
+        var.index = stmt.index;
+        var.captured = stmt.captured;
+        return var;
+    }
+
+    @Override
+    public Stmt visitWhileStmt(Stmt.While stmt) {
+        Expr condition = rewrite(stmt.condition);
+        Stmt body = rewriteRequired(stmt.body);
+        if (condition == stmt.condition && body == stmt.body) return stmt;
+
+        return new Stmt.While(condition, body);
+    }
+
+    @Override
+    public Expr visitArrayExpr(Expr.Array expr) {
+        List<Expr> elements = new ArrayList<>(expr.elements.size());
+        boolean changed = false;
+        for (Expr element : expr.elements) {
+            Expr result = rewrite(element);
+            elements.add(result);
+            changed |= result != element;
+        }
+
+        if (!changed) return expr;
+        return new Expr.Array(expr.bracket, elements);
+    }
+
+    @Override
+    public Expr visitAssignExpr(Expr.Assign expr) {
+        Expr value = rewrite(expr.value);
+        if (value == expr.value) return expr;
+
+        Expr.Assign assign = new Expr.Assign(expr.name, value);
+        assign.depth = expr.depth;
+        assign.slot = expr.slot;
+        assign.index = expr.index;
+        assign.upvalue = expr.upvalue;
+        assign.global = expr.global;
+        return assign;
+    }
+
+    @Override
+    public Expr visitAwaitExpr(Expr.Await expr) {
+        Expr value = rewrite(expr.value);
+        if (value == expr.value) return expr;
+
+        return new Expr.Await(expr.keyword, value);
+    }
+
+    @Override
+    public Expr visitBinaryExpr(Expr.Binary expr) {
+        Expr left = rewrite(expr.left);
+        Expr right = rewrite(expr.right);
+        if (left == expr.left && right == expr.right) return expr;
+
+        return new Expr.Binary(left, expr.operator, right);
+    }
+
+    @Override
+    public Expr visitCallExpr(Expr.Call expr) {
+        Expr callee = rewrite(expr.callee);
+
+        List<Expr> arguments = new ArrayList<>(expr.arguments.size());
+        boolean changed = callee != expr.callee;
+        for (Expr argument : expr.arguments) {
+            Expr result = rewrite(argument);
+            arguments.add(result);
+            changed |= result != argument;
+        }
+
+        if (!changed) return expr;
+
+        Expr.Call call = new Expr.Call(callee, expr.paren, arguments);
+        call.site = expr.site;
+        return call;
+    }
+
+    @Override
+    public Expr visitGroupingExpr(Expr.Grouping expr) {
+        Expr expression = rewrite(expr.expression);
+        if (expression == expr.expression) return expr;
+
+        return new Expr.Grouping(expression);
+    }
+
+    @Override
+    public Expr visitIndexExpr(Expr.Index expr) {
+        Expr object = rewrite(expr.object);
+        Expr index = rewrite(expr.index);
+        if (object == expr.object && index == expr.index) return expr;
+
+        return new Expr.Index(object, expr.bracket, index);
+    }
+
+    @Override
+    public Expr visitLiteralExpr(Expr.Literal expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitLogicalExpr(Expr.Logical expr) {
+        Expr left = rewrite(expr.left);
+        Expr right = rewrite(expr.right);
+        if (left == expr.left && right == expr.right) return expr;
+
+        return new Expr.Logical(left, expr.operator, right);
+    }
+
+    @Override
+    public Expr visitMapExpr(Expr.Map expr) {
+        List<Expr> keys = new ArrayList<>(expr.keys.size());
+        List<Expr> values = new ArrayList<>(expr.values.size());
+        boolean changed = false;
+        for (int i = 0; i < expr.keys.size(); i++) {
+            Expr key = rewrite(expr.keys.get(i));
+            Expr value = rewrite(expr.values.get(i));
+            keys.add(key);
+            values.add(value);
+            changed |= key != expr.keys.get(i) || value != expr.values.get(i);
+        }
+
+        if (!changed) return expr;
+        return new Expr.Map(expr.brace, keys, values);
+    }
+
+    @Override
+    public Expr visitSetIndexExpr(Expr.SetIndex expr) {
+        Expr object = rewrite(expr.object);
+        Expr index = rewrite(expr.index);
+        Expr value = rewrite(expr.value);
+        if (object == expr.object && index == expr.index && value == expr.value) return expr;
+
+        return new Expr.SetIndex(object, expr.bracket, index, value);
+    }
+
+    // No pass rewrites a call into something else
+    @Override
+    public Expr visitSpawnExpr(Expr.Spawn expr) {
+        Expr call = rewrite(expr.call);
+        if (call == expr.call) return expr;
+
+        return new Expr.Spawn(expr.keyword, (Expr.Call)call);
+    }
+
+    @Override
+    public Expr visitUnaryExpr(Expr.Unary expr) {
+        Expr right = rewrite(expr.right);
+        if (right == expr.right) return expr;
+
+        return new Expr.Unary(expr.operator, right);
+    }
+
+    @Override
+    public Expr visitVariableExpr(Expr.Variable expr) {
+        return expr;
+    }
+}
@@ -0,0 +1,389 @@
+package main.java;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Writes resolved statements in the binary form that AstReader reads back
+// Every node is a tag followed by its children and its resolution data, in
+// the order they are declared in. A String is written the first time it
+// appears and referred to by its index after that.
+class AstWriter implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    // Tags of the nodes, with NONE standing for a missing optional child
+    static final byte NONE = 0;
+    static final byte BLOCK = 1;
+    static final byte BREAK = 2;
+    static final byte EXPRESSION = 3;
+    static final byte FOR = 4;
+    static final byte IF = 5;
+    static final byte FUNCTION = 6;
+    static final byte PRINT = 7;
+    static final byte RETURN = 8;
+    static final byte VAR = 9;
+    static final byte WHILE = 10;
+    static final byte ASSIGN = 11;
+    static final byte BINARY = 12;
+    static final byte CALL = 13;
+    static final byte GROUPING = 14;
+    static final byte LITERAL = 15;
+    static final byte LOGICAL = 16;
+    static final byte UNARY = 17;
+    static final byte VARIABLE = 18;
+    static final byte AWAIT = 19;
+    static final byte SPAWN = 20;
+    static final byte ARRAY = 21;
+    static final byte INDEX = 22;
+    static final byte SET_INDEX = 23;
+    static final byte MAP = 24;
+
+    // Tags of the values of literals
+    static final byte NIL = 0;
+    static final byte FALSE = 1;
+    static final byte TRUE = 2;
+    static final byte NUMBER = 3;
+    static final byte STRING = 4;
+
+    private ByteBuffer out = ByteBuffer.allocate(16 * 1024);
+    private final Map<String, Integer> strings = new HashMap<>();
+
+    // Returns a buffer holding the written statements, followed by the global
+    // names they use
+    ByteBuffer write(List<Stmt> statements, List<String> globals) {
+        writeStatements(statements);
+        writeInt(globals.size());
+        for (String name : globals) {
+            writeString(name);
+        }
+        return out.flip();
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        tag(BLOCK);
+        writeStatements(stmt.statements);
+        writeInt(stmt.frameSize);
+        return null;
+    }
+
+    @Override
+    public Void visitBreakStmt(Stmt.Break stmt) {
+        tag(BREAK);
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        tag(EXPRESSION);
+        write(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitForStmt(Stmt.For stmt) {
+        tag(FOR);
+        write(stmt.initializer);
+        write(stmt.condition);
+        write(stmt.increment);
+        write(stmt.body);
+        writeInt(stmt.frameSize);
+        writeBoolean(stmt.counted);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        tag(IF);
+        write(stmt.condition);
+        write(stmt.thenBranch);
+        write(stmt.elseBranch);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        tag(FUNCTION);
+        writeToken(stmt.name);
+        writeInt(stmt.params.size());
+        for (Token param : stmt.params) {
+            writeToken(param);
+        }
+        writeStatements(stmt.body);
+        writeToken(stmt.memo);
+
+        // The memo cache belongs to a run and is not written
+        writeInt(stmt.slot);
+        writeInt(stmt.frameSize);
+        writeInt(stmt.index);
+        writeBoolean(stmt.captured);
+        writeInt(stmt.localCount);
+        for (boolean captured : stmt.capturedParams) {
+            writeBoolean(captured);
+        }
+        writeInt(stmt.captures.length);
+        for (int capture : stmt.captures) {
+            writeInt(capture);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        tag(PRINT);
+        write(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        tag(RETURN);
+        writeToken(stmt.keyword);
+        write(stmt.value);
+        writeBoolean(stmt.tailCall);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        tag(VAR);
+        writeToken(stmt.name);
+        write(stmt.initializer);
+        writeInt(stmt.slot);
+        writeInt(stmt.index);
+        writeBoolean(stmt.captured);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        tag(WHILE);
+        write(stmt.condition);
+        write(stmt.body);
+        return null;
+    }
+
+    @Override
+    public Void visitArrayExpr(Expr.Array expr) {
+        tag(ARRAY);
+        writeToken(expr.bracket);
+        writeInt(expr.elements.size());
+        for (Expr element : expr.elements) {
+            write(element);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        tag(ASSIGN);
+        writeToken(expr.name);
+        write(expr.value);
+        writeInt(expr.depth);
+        writeInt(expr.slot);
+        writeInt(expr.index);
+        writeInt(expr.upvalue);
+        writeInt(expr.global);
+        return null;
+    }
+
+    @Override
+    public Void visitAwaitExpr(Expr.Await expr) {
+        tag(AWAIT);
+        writeToken(expr.keyword);
+        write(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        tag(BINARY);
+        write(expr.left);
+        writeToken(expr.operator);
+        write(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        tag(CALL);
+        write(expr.callee);
+        writeToken(expr.paren);
+        writeInt(expr.arguments.size());
+        for (Expr argument : expr.arguments) {
+            write(argument);
+        }
+        writeInt(expr.site);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        tag(GROUPING);
+        write(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitIndexExpr(Expr.Index expr) {
+        tag(INDEX);
+        write(expr.object);
+        writeToken(expr.bracket);
+        write(expr.index);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        tag(LITERAL);
+        writeValue(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        tag(LOGICAL);
+        write(expr.left);
+        writeToken(expr.operator);
+        write(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitMapExpr(Expr.Map expr) {
+        tag(MAP);
+        writeToken(expr.brace);
+        writeInt(expr.keys.size());
+        for (int i = 0; i < expr.keys.size(); i++) {
+            write(expr.keys.get(i));
+            write(expr.values.get(i));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitSetIndexExpr(Expr.SetIndex expr) {
+        tag(SET_INDEX);
+        write(expr.object);
+        writeToken(expr.bracket);
+        write(expr.index);
+        write(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitSpawnExpr(Expr.Spawn expr) {
+        tag(SPAWN);
+        writeToken(expr.keyword);
+        write(expr.call);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        tag(UNARY);
+        writeToken(expr.operator);
+        write(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        tag(VARIABLE);
+        writeToken(expr.name);
+        writeInt(expr.depth);
+        writeInt(expr.slot);
+        writeInt(expr.index);
+        writeInt(expr.upvalue);
+        writeInt(expr.global);
+        return null;
+    }
+
+    private void writeStatements(List<Stmt> statements) {
+        writeInt(statements.size());
+        for (Stmt statement : statements) {
+            write(statement);
+        }
+    }
+
+    private void write(Stmt stmt) {
+        if (stmt == null) {
+            tag(NONE);
+        } else {
+            stmt.accept(this);
+        }
+    }
+
+    private void write(Expr expr) {
+        if (expr == null) {
+            tag(NONE);
+        } else {
+            expr.accept(this);
+        }
+    }
+
+    // A missing token is written as type -1
+    private void writeToken(Token token) {
+        if (token == null) {
+            writeInt(-1);
+            return;
+        }
+
+        writeInt(token.type.ordinal());
+        writeString(token.lexeme);
+        writeValue(token.literal);
+        writeInt(token.line);
+    }
+
+    private void writeValue(Object value) {
+        if (value == null) {
+            tag(NIL);
+        } else if (value instanceof Boolean) {
+            tag((Boolean)value ? TRUE : FALSE);
+        } else if (value instanceof Double) {
+            tag(NUMBER);
+            room(8).putDouble((Double)value);
+        } else {
+            tag(STRING);
+            writeString((String)value);
+        }
+    }
+
+    // A new String is written as -1 followed by its UTF-8 bytes
+    private void writeString(String string) {
+        Integer index = strings.get(string);
+        if (index != null) {
+            writeInt(index);
+            return;
+        }
+
+        strings.put(string, strings.size());
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        writeInt(-1);
+        writeInt(bytes.length);
+        room(bytes.length).put(bytes);
+    }
+
+    private void tag(byte tag) {
+        room(1).put(tag);
+    }
+
+    private void writeInt(int value) {
+        room(4).putInt(value);
+    }
+
+    private void writeBoolean(boolean value) {
+        room(1).put((byte)(value ? 1 : 0));
+    }
+
+    // Grows the buffer if it cannot hold the given number of bytes
+    private ByteBuffer room(int bytes) {
+        if (out.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(out.capacity() * 2,
+                                                             out.position() + bytes));
+            larger.put(out.flip());
+            out = larger;
+        }
+        return out;
+    }
+}
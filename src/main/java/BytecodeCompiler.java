@@ -0,0 +1,522 @@
+package main.java;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Compiles resolved statements into bytecode for the VM
+// Variables use the slots and depths assigned by the Resolver
+class BytecodeCompiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    private static final int MAX_OPERAND = 0xffff;
+
+    // The globals of the VM the code will run on
+    private final Environment globals;
+    private final Reporter reporter;
+    private final MemoCache[] memoCaches;
+
+    private VmFunction function;
+    private Map<Object, Integer> constantIndexes = new HashMap<>();
+    private int scopeDepth = 0;
+    private Loop loop = null;
+    private int line = 1;
+
+    // Tracks the 'break' jumps that need to be patched once a loop is compiled
+    private static class Loop {
+        final Loop enclosing;
+        final int scopeDepth;
+        final List<Integer> breakJumps = new ArrayList<>();
+
+        Loop(Loop enclosing, int scopeDepth) {
+            this.enclosing = enclosing;
+            this.scopeDepth = scopeDepth;
+        }
+    }
+
+    // Memoized functions get their cache from the run's memo caches
+    BytecodeCompiler(Environment globals, Reporter reporter, MemoCache[] memoCaches) {
+        this.globals = globals;
+        this.reporter = reporter;
+        this.memoCaches = memoCaches;
+    }
+
+    // Compiles the top-level statements into a script function
+    VmFunction compile(List<Stmt> statements) {
+        function = new VmFunction(null, 0, 0, null);
+
+        for (Stmt statement : statements) {
+            compile(statement);
+        }
+
+        emit(OpCode.NIL, null);
+        emit(OpCode.RETURN, null);
+        return function;
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        beginScope(stmt.frameSize);
+
+        for (Stmt statement : stmt.statements) {
+            compile(statement);
+        }
+
+        endScope(stmt.frameSize);
+        return null;
+    }
+
+    @Override
+    public Void visitBreakStmt(Stmt.Break stmt) {
+        // Leave every scope opened inside the loop before jumping out of it
+        for (int i = loop.scopeDepth; i < scopeDepth; i++) {
+            emit(OpCode.POP_SCOPE, null);
+        }
+
+        loop.breakJumps.add(emitJump(OpCode.JUMP, null));
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        compile(stmt.expression);
+        emit(OpCode.POP, null);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        VmFunction enclosingFunction = function;
+        Map<Object, Integer> enclosingConstants = constantIndexes;
+        int enclosingScopeDepth = scopeDepth;
+        Loop enclosingLoop = loop;
+
+        function = new VmFunction(stmt.name.lexeme, stmt.params.size(),
+                                  stmt.frameSize, memoCache(stmt));
+        constantIndexes = new HashMap<>();
+        scopeDepth = 0;
+        loop = null;
+
+        for (Stmt statement : stmt.body) {
+            compile(statement);
+        }
+
+        emit(OpCode.NIL, null);
+        emit(OpCode.RETURN, null);
+        VmFunction compiled = function;
+
+        function = enclosingFunction;
+        constantIndexes = enclosingConstants;
+        scopeDepth = enclosingScopeDepth;
+        loop = enclosingLoop;
+
+        emit(OpCode.CLOSURE, stmt.name);
+        emitShort(makeConstant(compiled, stmt.name), stmt.name);
+        emitDefine(stmt.slot, stmt.name);
+        return null;
+    }
+
+    private MemoCache memoCache(Stmt.Function stmt) {
+        return stmt.memoIndex < 0 ? null : memoCaches[stmt.memoIndex];
+    }
+
+    @Override
+    public Void visitForStmt(Stmt.For stmt) {
+        beginScope(stmt.frameSize);
+        if (stmt.initializer != null) compile(stmt.initializer);
+
+        int loopStart = function.chunk.count;
+        loop = new Loop(loop, scopeDepth);
+
+        compile(stmt.condition);
+        int exitJump = emitJump(OpCode.JUMP_IF_FALSE, null);
+        emit(OpCode.POP, null);
+        compile(stmt.body);
+
+        if (stmt.increment != null) {
+            compile(stmt.increment);
+            emit(OpCode.POP, null);
+        }
+        emitLoop(loopStart);
+
+        patchJump(exitJump);
+        emit(OpCode.POP, null);
+
+        for (int breakJump : loop.breakJumps) {
+            patchJump(breakJump);
+        }
+        loop = loop.enclosing;
+
+        endScope(stmt.frameSize);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        compile(stmt.condition);
+
+        int thenJump = emitJump(OpCode.JUMP_IF_FALSE, null);
+        emit(OpCode.POP, null);
+        compile(stmt.thenBranch);
+
+        int elseJump = emitJump(OpCode.JUMP, null);
+        patchJump(thenJump);
+        emit(OpCode.POP, null);
+        if (stmt.elseBranch != null) compile(stmt.elseBranch);
+        patchJump(elseJump);
+
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        compile(stmt.expression);
+        emit(OpCode.PRINT, null);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        if (stmt.tailCall) {
+            Expr.Call call = (Expr.Call)stmt.value;
+            compile(call.callee);
+
+            for (Expr argument : call.arguments) {
+                compile(argument);
+            }
+
+            emit(OpCode.TAIL_CALL, call.paren);
+            emitShort(call.arguments.size(), call.paren);
+        } else if (stmt.value != null) {
+            compile(stmt.value);
+        } else {
+            emit(OpCode.NIL, stmt.keyword);
+        }
+
+        emit(OpCode.RETURN, stmt.keyword);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        if (stmt.initializer != null) {
+            compile(stmt.initializer);
+        } else {
+            emit(OpCode.NIL, stmt.name);
+        }
+
+        emitDefine(stmt.slot, stmt.name);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        int loopStart = function.chunk.count;
+        loop = new Loop(loop, scopeDepth);
+
+        compile(stmt.condition);
+        int exitJump = emitJump(OpCode.JUMP_IF_FALSE, null);
+        emit(OpCode.POP, null);
+        compile(stmt.body);
+        emitLoop(loopStart);
+
+        patchJump(exitJump);
+        emit(OpCode.POP, null);
+
+        // A break skips the condition, which has already been popped
+        for (int breakJump : loop.breakJumps) {
+            patchJump(breakJump);
+        }
+        loop = loop.enclosing;
+
+        return null;
+    }
+
+    @Override
+    public Void visitArrayExpr(Expr.Array expr) {
+        for (Expr element : expr.elements) {
+            compile(element);
+        }
+
+        emit(OpCode.ARRAY, expr.bracket);
+        emitShort(expr.elements.size(), expr.bracket);
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        compile(expr.value);
+
+        if (expr.depth >= 0) {
+            emit(OpCode.SET_LOCAL, expr.name);
+            emitShort(expr.depth, expr.name);
+            emitShort(expr.slot, expr.name);
+        } else {
+            emit(OpCode.SET_GLOBAL, expr.name);
+            emitShort(makeGlobal(expr.name), expr.name);
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        compile(expr.left);
+        compile(expr.right);
+
+        switch (expr.operator.type) {
+            case BANG_EQUAL:    emit(OpCode.NOT_EQUAL, expr.operator); break;
+            case EQUAL_EQUAL:   emit(OpCode.EQUAL, expr.operator); break;
+            case GREATER:       emit(OpCode.GREATER, expr.operator); break;
+            case GREATER_EQUAL: emit(OpCode.GREATER_EQUAL, expr.operator); break;
+            case LESS:          emit(OpCode.LESS, expr.operator); break;
+            case LESS_EQUAL:    emit(OpCode.LESS_EQUAL, expr.operator); break;
+            case MINUS:         emit(OpCode.SUBTRACT, expr.operator); break;
+            case PLUS:          emit(OpCode.ADD, expr.operator); break;
+            case SLASH:         emit(OpCode.DIVIDE, expr.operator); break;
+            case STAR:          emit(OpCode.MULTIPLY, expr.operator); break;
+            default:
+                break;
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        compile(expr.callee);
+
+        for (Expr argument : expr.arguments) {
+            compile(argument);
+        }
+
+        emit(OpCode.CALL, expr.paren);
+        emitShort(expr.arguments.size(), expr.paren);
+        return null;
+    }
+
+    @Override
+    public Void visitSpawnExpr(Expr.Spawn expr) {
+        compile(expr.call.callee);
+
+        for (Expr argument : expr.call.arguments) {
+            compile(argument);
+        }
+
+        emit(OpCode.SPAWN, expr.call.paren);
+        emitShort(expr.call.arguments.size(), expr.call.paren);
+        return null;
+    }
+
+    @Override
+    public Void visitAwaitExpr(Expr.Await expr) {
+        compile(expr.value);
+        emit(OpCode.AWAIT, expr.keyword);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        compile(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitIndexExpr(Expr.Index expr) {
+        compile(expr.object);
+        compile(expr.index);
+        emit(OpCode.GET_INDEX, expr.bracket);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        if (expr.value == null) {
+            emit(OpCode.NIL, null);
+        } else if (expr.value.equals(true)) {
+            emit(OpCode.TRUE, null);
+        } else if (expr.value.equals(false)) {
+            emit(OpCode.FALSE, null);
+        } else {
+            emit(OpCode.CONSTANT, null);
+            emitShort(makeConstant(expr.value, null), null);
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        compile(expr.left);
+
+        if (expr.operator.type == TokenType.OR) {
+            // Skip the right operand if the left one is truthy
+            int elseJump = emitJump(OpCode.JUMP_IF_FALSE, expr.operator);
+            int endJump = emitJump(OpCode.JUMP, expr.operator);
+
+            patchJump(elseJump);
+            emit(OpCode.POP, expr.operator);
+            compile(expr.right);
+            patchJump(endJump);
+        } else {
+            // Skip the right operand if the left one is falsey
+            int endJump = emitJump(OpCode.JUMP_IF_FALSE, expr.operator);
+
+            emit(OpCode.POP, expr.operator);
+            compile(expr.right);
+            patchJump(endJump);
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitMapExpr(Expr.Map expr) {
+        for (int i = 0; i < expr.keys.size(); i++) {
+            compile(expr.keys.get(i));
+            compile(expr.values.get(i));
+        }
+
+        emit(OpCode.MAP, expr.brace);
+        emitShort(expr.keys.size(), expr.brace);
+        return null;
+    }
+
+    @Override
+    public Void visitSetIndexExpr(Expr.SetIndex expr) {
+        compile(expr.object);
+        compile(expr.index);
+        compile(expr.value);
+        emit(OpCode.SET_INDEX, expr.bracket);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        compile(expr.right);
+
+        switch (expr.operator.type) {
+            case BANG:  emit(OpCode.NOT, expr.operator); break;
+            case MINUS: emit(OpCode.NEGATE, expr.operator); break;
+            default:
+                break;
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        if (expr.depth >= 0) {
+            emit(OpCode.GET_LOCAL, expr.name);
+            emitShort(expr.depth, expr.name);
+            emitShort(expr.slot, expr.name);
+        } else {
+            emit(OpCode.GET_GLOBAL, expr.name);
+            emitShort(makeGlobal(expr.name), expr.name);
+        }
+
+        return null;
+    }
+
+    private void compile(Stmt stmt) {
+        stmt.accept(this);
+    }
+
+    private void compile(Expr expr) {
+        expr.accept(this);
+    }
+
+    // Scopes that declare nothing have no frame, see Resolver.endBlockScope()
+    private void beginScope(int frameSize) {
+        if (frameSize == 0) return;
+
+        emit(OpCode.PUSH_SCOPE, null);
+        emitShort(frameSize, null);
+        scopeDepth++;
+    }
+
+    private void endScope(int frameSize) {
+        if (frameSize == 0) return;
+
+        scopeDepth--;
+        emit(OpCode.POP_SCOPE, null);
+    }
+
+    // Top-level declarations have no slot and are defined by name
+    private void emitDefine(int slot, Token name) {
+        if (slot < 0) {
+            emit(OpCode.DEFINE_GLOBAL, name);
+            emitShort(makeGlobal(name), name);
+        } else {
+            emit(OpCode.DEFINE_LOCAL, name);
+            emitShort(slot, name);
+        }
+    }
+
+    private void emit(byte op, Token token) {
+        if (token != null) line = token.line;
+        function.chunk.write(op, token);
+    }
+
+    private void emitShort(int value, Token token) {
+        if (value > MAX_OPERAND) {
+            error(token, "Too many locals, constants or arguments in one function.");
+        }
+
+        function.chunk.writeShort(value, token);
+    }
+
+    // Not every instruction has a token, so fall back to the last line seen
+    private void error(Token token, String message) {
+        if (token != null) {
+            reporter.error(token, message);
+        } else {
+            reporter.error(line, message);
+        }
+    }
+
+    // Returns the offset of the jump's operand so it can be patched later
+    private int emitJump(byte op, Token token) {
+        emit(op, token);
+        function.chunk.writeShort(0, token);
+        return function.chunk.count - 2;
+    }
+
+    private void patchJump(int offset) {
+        int jump = function.chunk.count - offset - 2;
+        if (jump > MAX_OPERAND) {
+            error(function.chunk.tokens[offset], "Too much code to jump over.");
+        }
+
+        function.chunk.patchShort(offset, jump);
+    }
+
+    private void emitLoop(int loopStart) {
+        emit(OpCode.LOOP, null);
+
+        int offset = function.chunk.count - loopStart + 2;
+        if (offset > MAX_OPERAND) {
+            error(function.chunk.tokens[loopStart], "Loop body too large.");
+        }
+
+        function.chunk.writeShort(offset, null);
+    }
+
+    // Equal literals share a single entry in the constant pool
+    private int makeConstant(Object value, Token token) {
+        if (value instanceof VmFunction) return function.chunk.addConstant(value);
+
+        Integer index = constantIndexes.get(value);
+        if (index == null) {
+            index = function.chunk.addConstant(value);
+            constantIndexes.put(value, index);
+        }
+
+        return index;
+    }
+
+    // Globals are stored in the constant pool as their Globals, once per function
+    private int makeGlobal(Token name) {
+        return makeConstant(globals.global(name.lexeme), name);
+    }
+}
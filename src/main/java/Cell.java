@@ -0,0 +1,11 @@
+package main.java;
+
+// Holds a local variable that a closure has captured, so that the frame
+// that declared it and every closure that refers to it share one value
+class Cell {
+    Object value;
+
+    Cell(Object value) {
+        this.value = value;
+    }
+}
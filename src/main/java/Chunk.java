@@ -0,0 +1,45 @@
+package main.java;
+
+import java.util.Arrays;
+
+// A compiled sequence of bytecode along with its constant pool
+// Every instruction remembers the token it came from for error reporting
+class Chunk {
+    byte[] code = new byte[64];
+    Token[] tokens = new Token[64];
+    int count = 0;
+
+    Object[] constants = new Object[16];
+    int constantCount = 0;
+
+    void write(int value, Token token) {
+        if (count == code.length) {
+            code = Arrays.copyOf(code, count * 2);
+            tokens = Arrays.copyOf(tokens, count * 2);
+        }
+
+        code[count] = (byte)value;
+        tokens[count] = token;
+        count++;
+    }
+
+    void writeShort(int value, Token token) {
+        write((value >> 8) & 0xff, token);
+        write(value & 0xff, token);
+    }
+
+    // Overwrites a previously written operand (used for patching jumps)
+    void patchShort(int offset, int value) {
+        code[offset] = (byte)((value >> 8) & 0xff);
+        code[offset + 1] = (byte)(value & 0xff);
+    }
+
+    int addConstant(Object value) {
+        if (constantCount == constants.length) {
+            constants = Arrays.copyOf(constants, constantCount * 2);
+        }
+
+        constants[constantCount] = value;
+        return constantCount++;
+    }
+}
@@ -0,0 +1,11 @@
+package main.java;
+
+// How a statement finished executing in the Interpreter
+// 'break' and 'return' travel back up through execute() as these signals,
+// instead of being thrown
+enum Completion {
+    NORMAL,
+    BREAK,
+    RETURN,
+    TAIL_CALL   // A return of a call, which the caller makes in its own place
+}
@@ -0,0 +1,76 @@
+package main.java;
+
+// Evaluates operators whose operands are all literals
+// Anything that would fail at runtime, like dividing by zero or adding a
+// number to nil, is left alone so that the error is still reported
+class ConstantFolder extends AstRewriter {
+    @Override
+    public Expr visitBinaryExpr(Expr.Binary expr) {
+        expr = (Expr.Binary)super.visitBinaryExpr(expr);
+        if (!(expr.left instanceof Expr.Literal && expr.right instanceof Expr.Literal)) {
+            return expr;
+        }
+
+        Object left = ((Expr.Literal)expr.left).value;
+        Object right = ((Expr.Literal)expr.right).value;
+
+        switch (expr.operator.type) {
+            case BANG_EQUAL:  return new Expr.Literal(!Interpreter.isEqual(left, right));
+            case EQUAL_EQUAL: return new Expr.Literal(Interpreter.isEqual(left, right));
+            case PLUS:
+                // Concatenates strings, also with a number on either side
+                if (left instanceof String && (right instanceof String || right instanceof Double) ||
+                    left instanceof Double && right instanceof String) {
+                    return new Expr.Literal(Interpreter.stringify(left) +
+                                            Interpreter.stringify(right));
+                }
+                break;
+            default:
+                break;
+        }
+
+        if (!(left instanceof Double && right instanceof Double)) return expr;
+
+        double a = (double)left;
+        double b = (double)right;
+
+        switch (expr.operator.type) {
+            case GREATER:       return new Expr.Literal(a > b);
+            case GREATER_EQUAL: return new Expr.Literal(a >= b);
+            case LESS:          return new Expr.Literal(a < b);
+            case LESS_EQUAL:    return new Expr.Literal(a <= b);
+            case MINUS:         return new Expr.Literal(a - b);
+            case PLUS:          return new Expr.Literal(a + b);
+            case STAR:          return new Expr.Literal(a * b);
+            case SLASH:
+                if (b == 0) return expr;
+                return new Expr.Literal(a / b);
+            default:
+                return expr;
+        }
+    }
+
+    // Grouping only matters to the parser
+    @Override
+    public Expr visitGroupingExpr(Expr.Grouping expr) {
+        return rewrite(expr.expression);
+    }
+
+    @Override
+    public Expr visitUnaryExpr(Expr.Unary expr) {
+        expr = (Expr.Unary)super.visitUnaryExpr(expr);
+        if (!(expr.right instanceof Expr.Literal)) return expr;
+
+        Object right = ((Expr.Literal)expr.right).value;
+
+        switch (expr.operator.type) {
+            case BANG:
+                return new Expr.Literal(!Interpreter.isTruthy(right));
+            case MINUS:
+                if (!(right instanceof Double)) return expr;
+                return new Expr.Literal(-(double)right);
+            default:
+                return expr;
+        }
+    }
+}
@@ -2,101 +2,223 @@ package main.java;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.List;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 
+// The command line interface, running one script or a prompt in one context
+// Embedders use CynchScript and CynchContext directly
 public class Cynch {
 
-    // Static so that successive calls use the same interpreter
-    private static final Interpreter interpreter = new Interpreter();
+    // The tree-walking interpreter is the default engine
+    private static CynchContext.Engine engine = CynchContext.Engine.TREE;
+    private static boolean buffered = true;
 
-    static boolean hadError = false;
-    static boolean hadRuntimeError = false;
+    // Created once the arguments are read, so that successive prompt lines
+    // share their globals
+    private static CynchContext context;
+
+    private static boolean optimize = true;
+    private static boolean optimizerStats = false;
+
+    // Where scripts that were run before are kept resolved, if anywhere
+    private static Path cacheDirectory = AstCache.defaultDirectory();
+
+    // Memoization of pure functions, which is otherwise limited to 'memo fun'
+    private static boolean memoizeAll = false;
+    private static boolean memoStats = false;
+    private static int memoSize = MemoCache.DEFAULT_CAPACITY;
+
+    // Profiling of calls and statements, and where to write collapsed stacks
+    private static Profiler profiler = null;
+    private static boolean profile = false;
+    private static Path stacksFile = null;
 
     // Allows for the interpreter to run code in two ways:
     // 1. From the command line with a path to the file
     // 2. Using a prompt to write one line at a time
     public static void main(String[] args) throws IOException {
-        if (args.length > 1) {
-            System.out.println("Usage: cynch [script]");
-            System.exit(64);
-        } else if (args.length == 1) {
-            runFile(args[0]);
+        String path = null;
+
+        for (String arg : args) {
+            if (arg.equals("--engine=tree")) {
+                engine = CynchContext.Engine.TREE;
+            } else if (arg.equals("--engine=vm")) {
+                engine = CynchContext.Engine.VM;
+            } else if (arg.equals("--engine=nodes")) {
+                engine = CynchContext.Engine.NODES;
+            } else if (arg.equals("--no-optimize")) {
+                optimize = false;
+            } else if (arg.equals("--opt-stats")) {
+                optimizerStats = true;
+            } else if (arg.equals("--memoize")) {
+                memoizeAll = true;
+            } else if (arg.equals("--memo-stats")) {
+                memoStats = true;
+            } else if (arg.equals("--no-cache")) {
+                cacheDirectory = null;
+            } else if (arg.startsWith("--cache-dir=")) {
+                cacheDirectory = Paths.get(arg.substring("--cache-dir=".length()));
+            } else if (arg.equals("--unbuffered")) {
+                buffered = false;
+            } else if (arg.startsWith("--memo-size=")) {
+                memoSize = parseSize(arg.substring("--memo-size=".length()));
+            } else if (arg.equals("--profile")) {
+                profile = true;
+            } else if (arg.startsWith("--profile-stacks=")) {
+                profile = true;
+                stacksFile = Paths.get(arg.substring("--profile-stacks=".length()));
+            } else if (path == null && !arg.startsWith("--")) {
+                path = arg;
+            } else {
+                usage();
+            }
+        }
+
+        // Only the tree-walking interpreter can be profiled
+        if (profile && engine != CynchContext.Engine.TREE) usage();
+        if (profile) profiler = new Profiler(stacksFile != null);
+
+        Output output = new Output(new OutputStreamWriter(System.out), buffered);
+        context = new CynchContext(engine, memoSize, output, new PrintWriter(System.err), profiler);
+
+        if (path != null) {
+            runFile(path);
         } else {
             runPrompt();
+            report();
         }
     }
 
+    private static void usage() {
+        System.out.println("Usage: cynch [--engine=tree|vm|nodes] [--no-optimize] " +
+                           "[--opt-stats] [--memoize] [--memo-size=n] [--memo-stats] " +
+                           "[--profile] [--profile-stacks=path] " +
+                           "[--unbuffered] [--no-cache] [--cache-dir=path] [script]");
+        System.exit(64);
+    }
+
+    // Prints the statistics that were asked for on exit
+    private static void report() throws IOException {
+        if (memoStats) {
+            for (MemoCache cache : context.memoCaches()) {
+                System.err.println("[memo] " + cache);
+            }
+        }
+
+        if (profiler != null) {
+            profiler.report(System.err);
+            if (stacksFile != null) profiler.writeStacks(stacksFile);
+        }
+    }
+
+    private static int parseSize(String size) {
+        try {
+            int value = Integer.parseInt(size);
+            if (value > 0) return value;
+        } catch (NumberFormatException error) {
+            // Reported below
+        }
+
+        usage();
+        return 0;
+    }
+
     // Runs the file at the path given from the command line
+    // A script that was run before is loaded from the cache, otherwise it is
+    // scanned as it is read, without loading it whole
     private static void runFile(String path) throws IOException {
-        byte bytes[] = Files.readAllBytes(Paths.get(path));
-        run(new String(bytes, Charset.defaultCharset()));
+        Path file = Paths.get(path);
+        Reporter reporter = context.reporter;
+
+        AstCache astCache = null;
+        String key = null;
+        Stmt.Block program = null;
+        if (cacheDirectory != null) {
+            astCache = new AstCache(cacheDirectory, optimize);
+            key = astCache.key(file);
+
+            // The optimizer only reports on scripts it runs on
+            if (!optimizerStats) program = astCache.load(key);
+        }
+
+        if (program == null) {
+            // The entry is named by the content that was compiled, which is
+            // not what was hashed above if the file changed in between
+            MessageDigest digest = astCache != null ? astCache.digest() : null;
+            InputStream in = Files.newInputStream(file);
+            if (digest != null) in = new DigestInputStream(in, digest);
+
+            try (Reader reader = new InputStreamReader(in, Charset.defaultCharset())) {
+                program = resolve(new Scanner(reader, reporter));
+
+                // Anything the reader left unread is part of the content too
+                if (program != null && digest != null) in.transferTo(OutputStream.nullOutputStream());
+            } catch (UncheckedIOException error) {
+                throw error.getCause();
+            }
+
+            if (program != null && astCache != null) astCache.store(astCache.key(digest), program);
+        }
+
+        try {
+            // Memo caches belong to a run, so the purity analysis is not cached
+            CynchScript script = null;
+            if (program != null) script = CynchScript.analyze(program, memoizeAll, reporter);
+            if (script != null) context.execute(script);
+        } finally {
+            context.output.flush();
+        }
+
+        report();
 
         // Indicate an error in the exit code.
-        if (hadError) System.exit(65);
-        if (hadRuntimeError) System.exit(70);
+        if (reporter.hadError) System.exit(65);
+        if (reporter.hadRuntimeError) System.exit(70);
     }
 
     // Runs the code given through the prompt
     private static void runPrompt() throws IOException {
         InputStreamReader input = new InputStreamReader(System.in);
         BufferedReader reader = new BufferedReader(input);
+        Reporter reporter = context.reporter;
 
         for (;;) {
+            // What the last line printed comes before the next prompt
+            context.output.flush();
             System.out.print("> ");
             String line = reader.readLine();
 
-            // Exit the prompt by typing CTRL-C
-            
-            run(line);
-            hadError = false;
-        }
-    }
-
-    private static void run(String source) {
-        Scanner scanner = new Scanner(source);
-        List<Token> tokens = scanner.scanTokens();
-        Parser parser = new Parser(tokens);
-        List<Stmt> statements = parser.parse();
+            // Exit the prompt by typing CTRL-C or CTRL-D
+            if (line == null) break;
 
-        // Stop if there was a syntax error
-        if (hadError) return;
-
-        Resolver resolver = new Resolver(interpreter);
-        resolver.resolve(statements);
-
-        if (hadError) return;
-
-        interpreter.interpret(statements);
-    }
-
-    static void error(int line, String message) {
-        report(line, "", message);
+            Stmt.Block program = resolve(new Scanner(line, reporter));
+            CynchScript script = null;
+            if (program != null) script = CynchScript.analyze(program, memoizeAll, reporter);
+            if (script != null) context.execute(script);
+            reporter.clear();
+        }
     }
 
-    // Reports the given error with information
-    private static void report(int line, String where, String message) {
-        // Reports the location and error
-        System.err.println("[line " + line + "] Error" + where + ": " + message);
-        hadError = true;
-    }
+    // Runs the front end on a script, returning null if it has errors
+    private static Stmt.Block resolve(Scanner scanner) {
+        Optimizer optimizer = optimize ? Optimizer.standard() : null;
+        Stmt.Block program = CynchScript.resolve(scanner, optimizer, context.reporter);
 
-    // Shows the error to the user
-    static void error(Token token, String message) {
-        if (token.type == TokenType.EOF) {
-            report(token.line, " at end", message);
-        } else {
-            report(token.line, " at '" + token.lexeme + "'", message);
+        if (program != null && optimizer != null && optimizerStats) {
+            System.err.println("[optimizer] removed " + optimizer.removed + " nodes");
         }
-    }
-
-    static void runtimeError(RuntimeError error) {
-        System.err.println("\n[line " + error.token.line
-        + "] " + error.getMessage());
 
-        hadRuntimeError = true;
+        return program;
     }
-}
\ No newline at end of file
+}
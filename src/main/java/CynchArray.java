@@ -0,0 +1,123 @@
+package main.java;
+
+import java.util.Arrays;
+
+// The value of an array literal, a growable list indexed from 0
+// As long as an array has only held numbers they are kept unboxed in a
+// double[]. The first store of anything else widens it to an Object[],
+// which it keeps from then on.
+class CynchArray {
+    private static final int MIN_CAPACITY = 8;
+
+    private double[] doubles;
+    private Object[] objects = null;
+    private int size = 0;
+
+    CynchArray(int capacity) {
+        this.doubles = new double[Math.max(capacity, MIN_CAPACITY)];
+    }
+
+    int length() {
+        return size;
+    }
+
+    // True while the elements are in the double[]
+    boolean isNumeric() {
+        return objects == null;
+    }
+
+    // The index must have been checked with checkIndex()
+    Object get(int index) {
+        if (objects == null) return doubles[index];
+        return objects[index];
+    }
+
+    // Only for numeric arrays, reads an element without boxing it
+    double getDouble(int index) {
+        return doubles[index];
+    }
+
+    void set(int index, Object value) {
+        if (objects == null) {
+            if (value instanceof Double) {
+                doubles[index] = (double)value;
+                return;
+            }
+            widen();
+        }
+
+        objects[index] = value;
+    }
+
+    // Stores a number without boxing it, unless the array has been widened
+    void setDouble(int index, double value) {
+        if (objects == null) {
+            doubles[index] = value;
+        } else {
+            objects[index] = value;
+        }
+    }
+
+    void push(Object value) {
+        int capacity = objects == null ? doubles.length : objects.length;
+        if (size == capacity) grow(capacity * 2);
+
+        set(size++, value);
+    }
+
+    // The array must not be empty
+    Object pop() {
+        Object value = get(--size);
+        if (objects != null) objects[size] = null;
+        return value;
+    }
+
+    // Makes sure the value is a whole number that indexes an element
+    // Returns the index, or throws with the token of the brackets
+    int checkIndex(Object index, Token bracket) {
+        if (!(index instanceof Double)) {
+            throw new RuntimeError(bracket, "Array index must be a number.");
+        }
+
+        return checkIndex((double)index, bracket);
+    }
+
+    int checkIndex(double index, Token bracket) {
+        int i = (int)index;
+        if (i != index) {
+            throw new RuntimeError(bracket, "Array index must be a whole number.");
+        }
+        if (i < 0 || i >= size) {
+            throw new RuntimeError(bracket, "Array index " + i + " is out of bounds for length " + size + ".");
+        }
+
+        return i;
+    }
+
+    private void grow(int capacity) {
+        if (objects == null) {
+            doubles = Arrays.copyOf(doubles, capacity);
+        } else {
+            objects = Arrays.copyOf(objects, capacity);
+        }
+    }
+
+    private void widen() {
+        objects = new Object[doubles.length];
+        for (int i = 0; i < size; i++) {
+            objects[i] = doubles[i];
+        }
+        doubles = null;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) text.append(", ");
+            text.append(Interpreter.stringify(get(i)));
+        }
+
+        return text.append("]").toString();
+    }
+}
@@ -0,0 +1,128 @@
+package main.java;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+// Runs compiled scripts with globals, output and error reporting of its own
+// A context runs one script at a time, so to run scripts in parallel every
+// thread needs a context of its own. Globals defined by a script stay defined
+// for the scripts the context runs after it.
+public final class CynchContext {
+    public enum Engine {
+        TREE,
+        VM,
+        NODES
+    }
+
+    private final Engine engine;
+    private final int memoSize;
+
+    final Output output;
+    final Reporter reporter;
+
+    // Only the engine that is used is created
+    private final Interpreter interpreter;
+    private final VM vm;
+    private final NodeInterpreter nodeInterpreter;
+
+    // Every memo cache the context has made, in the order they were made
+    private final List<MemoCache> memoCaches = new ArrayList<>();
+
+    // Runs scripts with the tree-walking interpreter
+    public CynchContext(Writer out) {
+        this(out, Engine.TREE);
+    }
+
+    // What the scripts print is written to 'out' once each script has run
+    public CynchContext(Writer out, Engine engine) {
+        this(engine, MemoCache.DEFAULT_CAPACITY, new Output(out, true), null);
+    }
+
+    // Without a PrintWriter for errors, they are only thrown by run()
+    CynchContext(Engine engine, int memoSize, Output output, PrintWriter errors) {
+        this(engine, memoSize, output, errors, null);
+    }
+
+    // A profiler is only used by the tree-walking interpreter
+    CynchContext(Engine engine, int memoSize, Output output, PrintWriter errors,
+                 Profiler profiler) {
+        this.engine = engine;
+        this.memoSize = memoSize;
+        this.output = output;
+        this.reporter = new Reporter(output, errors);
+
+        if (engine != Engine.TREE) {
+            this.interpreter = null;
+        } else if (profiler != null) {
+            this.interpreter = new ProfilingInterpreter(output, reporter, profiler);
+        } else {
+            this.interpreter = new Interpreter(output, reporter);
+        }
+        this.vm = engine == Engine.VM ? new VM(output, reporter) : null;
+        this.nodeInterpreter = engine == Engine.NODES ? new NodeInterpreter(output, reporter) : null;
+    }
+
+    // Defines a global for the scripts to read, e.g. a parameter of a run
+    // Numbers become doubles, and only strings, booleans and null are taken as is
+    public void define(String name, Object value) {
+        if (value instanceof Number) {
+            value = ((Number)value).doubleValue();
+        } else if (value != null && !(value instanceof String) && !(value instanceof Boolean)) {
+            throw new IllegalArgumentException("Cannot pass a " +
+                value.getClass().getSimpleName() + " to a script.");
+        }
+
+        globals().define(name, value);
+    }
+
+    private Environment globals() {
+        if (vm != null) return vm.globals;
+        if (nodeInterpreter != null) return nodeInterpreter.globals;
+        return interpreter.globals;
+    }
+
+    // Runs the script and writes out what it printed
+    public void run(CynchScript script) throws CynchException {
+        reporter.clear();
+
+        try {
+            execute(script);
+        } finally {
+            output.flush();
+        }
+
+        if (reporter.hadError || reporter.hadRuntimeError) {
+            throw new CynchException(reporter.messages());
+        }
+    }
+
+    // Runs the script, leaving its errors to the reporter
+    void execute(CynchScript script) {
+        MemoCache[] caches = new MemoCache[script.memoized.length];
+        for (int i = 0; i < caches.length; i++) {
+            caches[i] = new MemoCache(script.memoized[i], memoSize,
+                                      globals().link(script.dependencies.get(i)));
+            memoCaches.add(caches[i]);
+        }
+
+        List<Stmt> statements = script.program.statements;
+
+        if (engine == Engine.VM) {
+            VmFunction function = new BytecodeCompiler(vm.globals, reporter, caches).compile(statements);
+
+            if (reporter.hadError) return;
+
+            vm.interpret(function);
+        } else if (engine == Engine.NODES) {
+            nodeInterpreter.interpret(statements, caches);
+        } else {
+            interpreter.interpret(script.program, caches);
+        }
+    }
+
+    List<MemoCache> memoCaches() {
+        return memoCaches;
+    }
+}
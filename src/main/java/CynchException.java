@@ -0,0 +1,18 @@
+package main.java;
+
+import java.util.List;
+
+// Thrown with the errors of a script that failed to compile or to run
+public class CynchException extends Exception {
+    private final List<String> errors;
+
+    CynchException(List<String> errors) {
+        super(String.join("\n", errors));
+        this.errors = List.copyOf(errors);
+    }
+
+    // One message per error, e.g. "[line 3] Error at ';': Expect expression."
+    public List<String> errors() {
+        return errors;
+    }
+}
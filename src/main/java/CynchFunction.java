@@ -3,12 +3,21 @@ package main.java;
 import java.util.List;
 
 class CynchFunction implements CynchCallable {
-    private final Stmt.Function declaration;
-    private final Environment closure;
+    final Stmt.Function declaration;
+    final Cell[] upvalues;
+    private final MemoCache cache;
 
-    CynchFunction(Stmt.Function declaration, Environment closure) {
-        this.closure = closure;
+    // The call sites and globals of the script the function was declared in
+    final CynchCallable[] callees;
+    final Environment.Global[] globals;
+
+    CynchFunction(Stmt.Function declaration, Cell[] upvalues, MemoCache cache,
+                  CynchCallable[] callees, Environment.Global[] globals) {
         this.declaration = declaration;
+        this.upvalues = upvalues;
+        this.cache = cache;
+        this.callees = callees;
+        this.globals = globals;
     }
 
     @Override
@@ -21,19 +30,17 @@ class CynchFunction implements CynchCallable {
         return "<fn " + declaration.name.lexeme + ">";
     }
 
+    // A tail call runs in place of this call, so only this call's result is memoized
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
-        Environment environment = new Environment(closure);
-        for (int i = 0; i < declaration.params.size(); i++) {
-            environment.define(declaration.params.get(i).lexeme,
-                               arguments.get(i));
-        }
+        if (cache == null) return interpreter.call(this, arguments);
 
-        try {
-            interpreter.executeBlock(declaration.body, environment);
-        } catch(Return returnValue) {
-            return returnValue.value;
+        Object result = cache.get(arguments);
+        if (result == MemoCache.MISS) {
+            result = interpreter.call(this, arguments);
+            cache.put(arguments, result);
         }
-        return null;
+
+        return result;
     }
 }
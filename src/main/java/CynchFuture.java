@@ -0,0 +1,62 @@
+package main.java;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+// The value of a spawn expression, the result of a call running on another thread
+// Every spawned call gets a thread of its own, so calls that wait on each
+// other through channels or futures cannot starve the ones they wait for.
+// The threads are daemons, a script does not wait for calls it never awaits.
+class CynchFuture extends CompletableFuture<Object> {
+    private static final ExecutorService EXECUTOR = newExecutor();
+
+    // Without virtual threads, idle platform threads are kept for a while
+    private static ExecutorService newExecutor() {
+        ExecutorService executor = Threads.newVirtualThreadExecutor();
+        if (executor != null) return executor;
+
+        return Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "cynch-spawn");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Starts the call, which must not share mutable engine state with the caller
+    static CynchFuture spawn(Supplier<Object> call) {
+        CynchFuture future = new CynchFuture();
+        EXECUTOR.execute(() -> {
+            try {
+                future.complete(call.get());
+            } catch (Throwable error) {
+                future.completeExceptionally(error);
+            }
+        });
+        return future;
+    }
+
+    // Waits for the call to finish and returns its result
+    // A runtime error in the call is raised again where it is awaited
+    static Object await(Object value, Token keyword) {
+        if (!(value instanceof CynchFuture)) {
+            throw new RuntimeError(keyword, "Can only await futures.");
+        }
+
+        try {
+            return ((CynchFuture)value).join();
+        } catch (CompletionException error) {
+            Throwable cause = error.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+            if (cause instanceof Error) throw (Error)cause;
+            throw error;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<future>";
+    }
+}
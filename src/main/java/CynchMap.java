@@ -0,0 +1,240 @@
+package main.java;
+
+// The value of a map literal, keyed by numbers and strings
+// An open-addressing table with linear probing, kept in parallel arrays so
+// an entry costs a few array slots instead of a HashMap node and its boxes.
+// Number keys and values are stored unboxed, with NUMBER standing in for
+// them in 'keys' and 'values'. The hash of every key is kept next to it, so
+// probing compares hashes before strings and growing never rehashes.
+// Removing an entry shifts the ones probed past it back, so there are no
+// tombstones and lookups never slow down after deletes.
+class CynchMap {
+    private static final Object NUMBER = new Object();
+    private static final int MIN_CAPACITY = 8;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    // A null key marks an empty slot
+    private Object[] keys;
+    private double[] numberKeys;
+    private int[] hashes;
+    private Object[] values;
+    private double[] numberValues;
+    private int size = 0;
+
+    CynchMap(int expected) {
+        allocate(capacityFor(expected));
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Keys can be numbers or strings, which never equal each other
+    // Returns the key, with a string built by + flattened, or throws with
+    // the token of the brackets
+    static Object checkKey(Object key, Token token) {
+        if (key instanceof Double || key instanceof String) return key;
+        if (key instanceof LazyString) return key.toString();
+
+        throw new RuntimeError(token, "Map key must be a number or a string.");
+    }
+
+    // A missing key reads as nil
+    // The key must have been checked with checkKey()
+    Object get(Object key) {
+        if (key instanceof Double) return get((double)key);
+
+        int slot = find((String)key, hash(key.hashCode()));
+        return slot < 0 ? null : value(slot);
+    }
+
+    Object get(double key) {
+        int slot = find(key, hash(key));
+        return slot < 0 ? null : value(slot);
+    }
+
+    void put(Object key, Object value) {
+        if (key instanceof Double) {
+            put((double)key, value);
+            return;
+        }
+
+        int hash = hash(key.hashCode());
+        int slot = find((String)key, hash);
+        if (slot < 0) slot = insert(hash);
+
+        keys[slot] = key;
+        setValue(slot, value);
+    }
+
+    void put(double key, Object value) {
+        int hash = hash(key);
+        int slot = find(key, hash);
+        if (slot < 0) slot = insert(hash);
+
+        keys[slot] = NUMBER;
+        numberKeys[slot] = key;
+        setValue(slot, value);
+    }
+
+    // Returns whether there was an entry for the key
+    boolean remove(Object key) {
+        int slot;
+        if (key instanceof Double) {
+            slot = find((double)key, hash((double)key));
+        } else {
+            slot = find((String)key, hash(key.hashCode()));
+        }
+        if (slot < 0) return false;
+
+        size--;
+        int mask = keys.length - 1;
+
+        // Moves back every entry that would no longer be found past the hole
+        int hole = slot;
+        for (int i = (hole + 1) & mask; keys[i] != null; i = (i + 1) & mask) {
+            int home = hashes[i] & mask;
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                move(i, hole);
+                hole = i;
+            }
+        }
+
+        keys[hole] = null;
+        values[hole] = null;
+        return true;
+    }
+
+    CynchArray keys() {
+        CynchArray array = new CynchArray(size);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == NUMBER) {
+                array.push(numberKeys[i]);
+            } else if (keys[i] != null) {
+                array.push(keys[i]);
+            }
+        }
+
+        return array;
+    }
+
+    private int find(String key, int hash) {
+        int mask = keys.length - 1;
+        for (int i = hash & mask; keys[i] != null; i = (i + 1) & mask) {
+            if (hashes[i] == hash && key.equals(keys[i])) return i;
+        }
+        return -1;
+    }
+
+    // Keys compare like Cynch's ==, so NaN finds NaN and -0 is not 0
+    private int find(double key, int hash) {
+        long bits = Double.doubleToLongBits(key);
+        int mask = keys.length - 1;
+        for (int i = hash & mask; keys[i] != null; i = (i + 1) & mask) {
+            if (hashes[i] == hash && keys[i] == NUMBER &&
+                Double.doubleToLongBits(numberKeys[i]) == bits) return i;
+        }
+        return -1;
+    }
+
+    // Claims the empty slot for a new key, growing the table first if needed
+    private int insert(int hash) {
+        if (size + 1 > keys.length - (keys.length >>> 2)) grow();
+        size++;
+
+        int mask = keys.length - 1;
+        int i = hash & mask;
+        while (keys[i] != null) i = (i + 1) & mask;
+
+        hashes[i] = hash;
+        return i;
+    }
+
+    private Object value(int slot) {
+        if (values[slot] == NUMBER) return numberValues[slot];
+        return values[slot];
+    }
+
+    private void setValue(int slot, Object value) {
+        if (value instanceof Double) {
+            values[slot] = NUMBER;
+            numberValues[slot] = (double)value;
+        } else {
+            values[slot] = value;
+        }
+    }
+
+    private void move(int from, int to) {
+        keys[to] = keys[from];
+        numberKeys[to] = numberKeys[from];
+        hashes[to] = hashes[from];
+        values[to] = values[from];
+        numberValues[to] = numberValues[from];
+    }
+
+    private void grow() {
+        Object[] oldKeys = keys;
+        double[] oldNumberKeys = numberKeys;
+        int[] oldHashes = hashes;
+        Object[] oldValues = values;
+        double[] oldNumberValues = numberValues;
+
+        allocate(oldKeys.length * 2);
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] == null) continue;
+
+            int i = oldHashes[j] & mask;
+            while (keys[i] != null) i = (i + 1) & mask;
+
+            keys[i] = oldKeys[j];
+            numberKeys[i] = oldNumberKeys[j];
+            hashes[i] = oldHashes[j];
+            values[i] = oldValues[j];
+            numberValues[i] = oldNumberValues[j];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new Object[capacity];
+        numberKeys = new double[capacity];
+        hashes = new int[capacity];
+        values = new Object[capacity];
+        numberValues = new double[capacity];
+    }
+
+    // The smallest power of two that holds the entries at 3/4 full
+    private static int capacityFor(int expected) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < MAX_CAPACITY && capacity - (capacity >>> 2) < expected) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    // Spreads the bits, since linear probing suffers from clustered hashes
+    private static int hash(double key) {
+        long bits = Double.doubleToLongBits(key);
+        return hash((int)(bits ^ (bits >>> 32)));
+    }
+
+    private static int hash(int h) {
+        h *= 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("{");
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == null) continue;
+
+            if (text.length() > 1) text.append(", ");
+            Object key = keys[i] == NUMBER ? (Object)numberKeys[i] : keys[i];
+            text.append(Interpreter.stringify(key)).append(": ")
+                .append(Interpreter.stringify(value(i)));
+        }
+
+        return text.append("}").toString();
+    }
+}
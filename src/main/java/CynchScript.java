@@ -0,0 +1,97 @@
+package main.java;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+// A compiled script, ready to be run by any number of CynchContexts
+// Running a script never changes it, so one can be shared between threads
+public final class CynchScript {
+    // The top-level statements, with the size of the script's frame, the
+    // number of its call sites and its global names
+    final Stmt.Block program;
+
+    // The names of the memoized functions and the globals they use, by memo index
+    final String[] memoized;
+    final List<List<String>> dependencies;
+
+    private CynchScript(Stmt.Block program, String[] memoized, List<List<String>> dependencies) {
+        this.program = program;
+        this.memoized = memoized;
+        this.dependencies = dependencies;
+    }
+
+    public static CynchScript compile(String source) throws CynchException {
+        return compile(source, true, false);
+    }
+
+    // With 'memoizeAll' every pure function is memoized, not only 'memo fun's
+    public static CynchScript compile(String source, boolean optimize, boolean memoizeAll)
+            throws CynchException {
+        Reporter reporter = new Reporter(null, null);
+        return check(compile(new Scanner(source, reporter), optimize, memoizeAll, reporter),
+                     reporter);
+    }
+
+    // The source is scanned as it is read
+    public static CynchScript compile(Reader source, boolean optimize, boolean memoizeAll)
+            throws CynchException, IOException {
+        Reporter reporter = new Reporter(null, null);
+        try {
+            return check(compile(new Scanner(source, reporter), optimize, memoizeAll, reporter),
+                         reporter);
+        } catch (UncheckedIOException error) {
+            throw error.getCause();
+        }
+    }
+
+    private static CynchScript check(CynchScript script, Reporter reporter)
+            throws CynchException {
+        if (script == null) throw new CynchException(reporter.messages());
+        return script;
+    }
+
+    private static CynchScript compile(TokenStream tokens, boolean optimize,
+                                       boolean memoizeAll, Reporter reporter) {
+        Stmt.Block program = resolve(tokens, optimize ? Optimizer.standard() : null, reporter);
+        if (program == null) return null;
+
+        return analyze(program, memoizeAll, reporter);
+    }
+
+    // Parses, resolves and optimizes a script, returning null if it has errors
+    // Without an optimizer the script is not optimized
+    static Stmt.Block resolve(TokenStream tokens, Optimizer optimizer, Reporter reporter) {
+        Parser parser = new Parser(tokens, reporter);
+        List<Stmt> statements = parser.parse();
+
+        // Stop if there was a syntax error
+        if (reporter.hadError) return null;
+
+        Resolver resolver = new Resolver(reporter);
+        resolver.resolve(statements);
+
+        if (reporter.hadError) return null;
+
+        if (optimizer != null) statements = optimizer.optimize(statements);
+
+        Stmt.Block program = new Stmt.Block(statements);
+        program.frameSize = resolver.scriptFrameSize();
+        program.callSites = resolver.scriptCallSites();
+        program.globals = resolver.scriptGlobals();
+        return program;
+    }
+
+    // Finds the functions to memoize, the last step before a script can run
+    // Returns null if a 'memo fun' cannot be memoized
+    static CynchScript analyze(Stmt.Block program, boolean memoizeAll, Reporter reporter) {
+        PurityAnalyzer analyzer = new PurityAnalyzer(memoizeAll, reporter);
+        List<String> memoized = analyzer.analyze(program.statements);
+
+        if (reporter.hadError) return null;
+
+        return new CynchScript(program, memoized.toArray(new String[0]),
+                               analyzer.dependencies());
+    }
+}
@@ -0,0 +1,43 @@
+package main.java;
+
+import java.util.Arrays;
+
+// Removes the branches that a literal condition never takes
+// An 'if' becomes the branch that is taken and a 'while (false)' disappears,
+// as does a 'for' whose condition is false, apart from its initializer
+class DeadBranchEliminator extends AstRewriter {
+    @Override
+    public Stmt visitIfStmt(Stmt.If stmt) {
+        stmt = (Stmt.If)super.visitIfStmt(stmt);
+        if (!(stmt.condition instanceof Expr.Literal)) return stmt;
+
+        if (Interpreter.isTruthy(((Expr.Literal)stmt.condition).value)) {
+            return stmt.thenBranch;
+        }
+
+        return stmt.elseBranch;
+    }
+
+    @Override
+    public Stmt visitWhileStmt(Stmt.While stmt) {
+        stmt = (Stmt.While)super.visitWhileStmt(stmt);
+        if (!(stmt.condition instanceof Expr.Literal)) return stmt;
+
+        if (Interpreter.isTruthy(((Expr.Literal)stmt.condition).value)) return stmt;
+        return null;
+    }
+
+    @Override
+    public Stmt visitForStmt(Stmt.For stmt) {
+        stmt = (Stmt.For)super.visitForStmt(stmt);
+        if (!(stmt.condition instanceof Expr.Literal)) return stmt;
+
+        if (Interpreter.isTruthy(((Expr.Literal)stmt.condition).value)) return stmt;
+        if (stmt.initializer == null) return null;
+
+        // The initializer keeps the scope it was resolved in
+        Stmt.Block block = new Stmt.Block(Arrays.asList(stmt.initializer));
+        block.frameSize = stmt.frameSize;
+        return block;
+    }
+}
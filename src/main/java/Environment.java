@@ -1,57 +1,92 @@
 package main.java;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
+// Local scopes are fixed-size frames indexed by the slots the Resolver assigns
+// Globals are found by name once per script run: the Resolver numbers the
+// global names of a script, and each run links those numbers to the Globals
+// of its environment, so reading or assigning one is an array access. Names
+// that are not defined yet, e.g. at the prompt or by a function declared
+// below its callers, get a Global that is UNDEFINED until they are.
+// Every name gets one Global that is never replaced, so that every script
+// that uses the name sees the same value.
+// Spawned calls share the globals, so the names are kept in a concurrent map
+// and values are volatile. Locals belong to one call, unless a closure
+// captures them; values are handed between threads safely by spawn, await
+// and channels.
 class Environment {
-    final Environment enclosing;
-    private final Map<String, Object> values = new HashMap<>();
-
-    Environment() {
-        enclosing = null;
-    }
+    // The value of a global that has not been defined
+    private static final Object UNDEFINED = new Object();
 
-    Environment(Environment enclosing) {
-        this.enclosing = enclosing;
-    }
+    // A global that holds nil counts as not initialized
+    static final class Global {
+        volatile Object value = UNDEFINED;
 
-    Object get(Token name) {
-        if (values.containsKey(name.lexeme)) {
-            if (values.get(name.lexeme) == null) {
+        Object get(Token name) {
+            Object value = this.value;
+            if (value == UNDEFINED) {
+                throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
+            }
+            if (value == null) {
                 throw new RuntimeError(name, "Variable '" + name.lexeme + "' has not been initialized.");
             }
-            return values.get(name.lexeme);
+
+            return value;
         }
 
-        if (enclosing != null) return enclosing.get(name);
+        void assign(Token name, Object value) {
+            if (this.value == UNDEFINED) {
+                throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
+            }
 
-        throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
+            this.value = value;
+        }
     }
 
-    void assign(Token name, Object value) {
-        if (values.containsKey(name.lexeme)) {
-            values.put(name.lexeme, value);
-            return;
-        }
+    final Environment enclosing;
+    final Object[] slots;
+    private final ConcurrentHashMap<String, Global> globals;
 
-        if (enclosing != null) {
-            enclosing.assign(name, value);
-            return;
-        }
+    // Creates the global environment
+    Environment() {
+        enclosing = null;
+        slots = new Object[0];
+        globals = new ConcurrentHashMap<>();
+    }
 
-        throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
+    // Creates a local frame with room for 'size' variables
+    Environment(Environment enclosing, int size) {
+        this.enclosing = enclosing;
+        this.slots = new Object[size];
+        this.globals = null;
     }
 
     void define(String name, Object value) {
-        values.put(name, value);
+        global(name).value = value;
+    }
+
+    // The Global of a name, which holds UNDEFINED until it is defined
+    Global global(String name) {
+        return globals.computeIfAbsent(name, key -> new Global());
+    }
+
+    // The Globals of a script's global names, by the numbers the Resolver gave them
+    Global[] link(List<String> names) {
+        Global[] linked = new Global[names.size()];
+        for (int i = 0; i < linked.length; i++) {
+            linked[i] = global(names.get(i));
+        }
+
+        return linked;
     }
 
-    Object getAt(int distance, String name) {
-        return ancestor(distance).values.get(name);
+    Object getAt(int distance, int slot) {
+        return ancestor(distance).slots[slot];
     }
 
-    void assignAt(int distance, Token name, Object value) {
-        ancestor(distance).values.put(name.lexeme, value);
+    void assignAt(int distance, int slot, Object value) {
+        ancestor(distance).slots[slot] = value;
     }
 
     Environment ancestor(int distance) {
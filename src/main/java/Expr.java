@@ -4,15 +4,35 @@ import java.util.List;
 
 abstract class Expr {
     interface Visitor<R> {
+        R visitArrayExpr(Array expr);
         R visitAssignExpr(Assign expr);
+        R visitAwaitExpr(Await expr);
         R visitBinaryExpr(Binary expr);
         R visitCallExpr(Call expr);
         R visitGroupingExpr(Grouping expr);
+        R visitIndexExpr(Index expr);
         R visitLiteralExpr(Literal expr);
         R visitLogicalExpr(Logical expr);
+        R visitMapExpr(Map expr);
+        R visitSetIndexExpr(SetIndex expr);
+        R visitSpawnExpr(Spawn expr);
         R visitUnaryExpr(Unary expr);
         R visitVariableExpr(Variable expr);
     }
+  static class Array extends Expr {
+    Array(Token bracket, List<Expr> elements) {
+      this.bracket = bracket;
+      this.elements = elements;
+    }
+
+  @Override
+  <R> R accept(Visitor<R> visitor) {
+      return visitor.visitArrayExpr(this);
+  }
+
+    final Token bracket;
+    final List<Expr> elements;
+  }
   static class Assign extends Expr {
     Assign(Token name, Expr value) {
       this.name = name;
@@ -26,6 +46,27 @@ abstract class Expr {
 
     final Token name;
     final Expr value;
+
+    // Resolution data
+    int depth = -1;
+    int slot;
+    int index = -1;
+    int upvalue = -1;
+    int global = -1;
+  }
+  static class Await extends Expr {
+    Await(Token keyword, Expr value) {
+      this.keyword = keyword;
+      this.value = value;
+    }
+
+  @Override
+  <R> R accept(Visitor<R> visitor) {
+      return visitor.visitAwaitExpr(this);
+  }
+
+    final Token keyword;
+    final Expr value;
   }
   static class Binary extends Expr {
     Binary(Expr left, Token operator, Expr right) {
@@ -58,6 +99,9 @@ abstract class Expr {
     final Expr callee;
     final Token paren;
     final List<Expr> arguments;
+
+    // Resolution data
+    int site;
   }
   static class Grouping extends Expr {
     Grouping(Expr expression) {
@@ -71,6 +115,22 @@ abstract class Expr {
 
     final Expr expression;
   }
+  static class Index extends Expr {
+    Index(Expr object, Token bracket, Expr index) {
+      this.object = object;
+      this.bracket = bracket;
+      this.index = index;
+    }
+
+  @Override
+  <R> R accept(Visitor<R> visitor) {
+      return visitor.visitIndexExpr(this);
+  }
+
+    final Expr object;
+    final Token bracket;
+    final Expr index;
+  }
   static class Literal extends Expr {
     Literal(Object value) {
       this.value = value;
@@ -99,6 +159,54 @@ abstract class Expr {
     final Token operator;
     final Expr right;
   }
+  static class Map extends Expr {
+    Map(Token brace, List<Expr> keys, List<Expr> values) {
+      this.brace = brace;
+      this.keys = keys;
+      this.values = values;
+    }
+
+  @Override
+  <R> R accept(Visitor<R> visitor) {
+      return visitor.visitMapExpr(this);
+  }
+
+    final Token brace;
+    final List<Expr> keys;
+    final List<Expr> values;
+  }
+  static class SetIndex extends Expr {
+    SetIndex(Expr object, Token bracket, Expr index, Expr value) {
+      this.object = object;
+      this.bracket = bracket;
+      this.index = index;
+      this.value = value;
+    }
+
+  @Override
+  <R> R accept(Visitor<R> visitor) {
+      return visitor.visitSetIndexExpr(this);
+  }
+
+    final Expr object;
+    final Token bracket;
+    final Expr index;
+    final Expr value;
+  }
+  static class Spawn extends Expr {
+    Spawn(Token keyword, Call call) {
+      this.keyword = keyword;
+      this.call = call;
+    }
+
+  @Override
+  <R> R accept(Visitor<R> visitor) {
+      return visitor.visitSpawnExpr(this);
+  }
+
+    final Token keyword;
+    final Call call;
+  }
   static class Unary extends Expr {
     Unary(Token operator, Expr right) {
       this.operator = operator;
@@ -124,6 +232,13 @@ abstract class Expr {
   }
 
     final Token name;
+
+    // Resolution data
+    int depth = -1;
+    int slot;
+    int index = -1;
+    int upvalue = -1;
+    int global = -1;
   }
 
     abstract <R> R accept(Visitor<R> visitor);
@@ -0,0 +1,1008 @@
+package main.java;
+
+import java.util.Arrays;
+
+// Executable expression nodes
+// Binary operators start out uninitialized and rewrite themselves after
+// observing their operands; a specialization that sees an unexpected type
+// replaces itself with the generic node, which never specializes again
+// Numeric specializations pass unboxed doubles to each other through
+// executeDouble, so only the outermost one boxes its result
+abstract class ExprNode extends Node {
+    abstract Object execute(Environment frame);
+
+    // Evaluates the node as a primitive double
+    // Nodes that can produce one without boxing override this
+    double executeDouble(Environment frame) throws UnexpectedResultException {
+        return expectDouble(execute(frame));
+    }
+
+    // Evaluates the node for its truthiness, as if and while conditions do
+    boolean executeCondition(Environment frame) {
+        return Interpreter.isTruthy(execute(frame));
+    }
+
+    static double expectDouble(Object value) throws UnexpectedResultException {
+        if (value instanceof Double) return (double)value;
+        throw new UnexpectedResultException(value);
+    }
+
+    static class Literal extends ExprNode {
+        Literal(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return value;
+        }
+
+        final Object value;
+    }
+
+    // Keeps both forms of a number literal, so neither path allocates
+    static class LiteralDouble extends ExprNode {
+        LiteralDouble(double value) {
+            this.value = value;
+            this.boxed = value;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return boxed;
+        }
+
+        @Override
+        double executeDouble(Environment frame) {
+            return value;
+        }
+
+        final double value;
+        private final Object boxed;
+    }
+
+    static class LocalRead extends ExprNode {
+        LocalRead(int depth, int slot) {
+            this.depth = depth;
+            this.slot = slot;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return frame.getAt(depth, slot);
+        }
+
+        @Override
+        double executeDouble(Environment frame) throws UnexpectedResultException {
+            return expectDouble(frame.getAt(depth, slot));
+        }
+
+        final int depth;
+        final int slot;
+    }
+
+    // Reads a variable declared in the current frame
+    static class FrameRead extends ExprNode {
+        FrameRead(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return frame.slots[slot];
+        }
+
+        @Override
+        double executeDouble(Environment frame) throws UnexpectedResultException {
+            return expectDouble(frame.slots[slot]);
+        }
+
+        final int slot;
+    }
+
+    static class GlobalRead extends ExprNode {
+        GlobalRead(Environment.Global global, Token name) {
+            this.global = global;
+            this.name = name;
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return global.get(name);
+        }
+
+        final Environment.Global global;
+        final Token name;
+    }
+
+    static class LocalAssign extends ExprNode {
+        LocalAssign(int depth, int slot, ExprNode value) {
+            this.depth = depth;
+            this.slot = slot;
+            this.value = adopt(value);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Object result = value.execute(frame);
+            frame.assignAt(depth, slot, result);
+            return result;
+        }
+
+        @Override
+        void replaceChild(Node oldChild, Node newChild) {
+            value = (ExprNode)newChild;
+        }
+
+        final int depth;
+        final int slot;
+        ExprNode value;
+    }
+
+    static class GlobalAssign extends ExprNode {
+        GlobalAssign(Environment.Global global, Token name, ExprNode value) {
+            this.global = global;
+            this.name = name;
+            this.value = adopt(value);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Object result = value.execute(frame);
+            global.assign(name, result);
+            return result;
+        }
+
+        @Override
+        void replaceChild(Node oldChild, Node newChild) {
+            value = (ExprNode)newChild;
+        }
+
+        final Environment.Global global;
+        final Token name;
+        ExprNode value;
+    }
+
+    abstract static class Binary extends ExprNode {
+        Binary(ExprNode left, Token operator, ExprNode right) {
+            this.left = adopt(left);
+            this.operator = operator;
+            this.right = adopt(right);
+        }
+
+        @Override
+        void replaceChild(Node oldChild, Node newChild) {
+            if (left == oldChild) left = (ExprNode)newChild;
+            if (right == oldChild) right = (ExprNode)newChild;
+        }
+
+        @Override
+        void adoptChildren() {
+            adopt(left);
+            adopt(right);
+        }
+
+        // Gives up on specializing, the current operands are finished generically
+        Object generalize(Object leftValue, Object rightValue) {
+            return replace(new Generic(left, operator, right)).generic(leftValue, rightValue);
+        }
+
+        // The full semantics of every binary operator, including its errors
+        Object generic(Object leftValue, Object rightValue) {
+            switch (operator.type) {
+                case BANG_EQUAL:
+                    return !Interpreter.isEqual(leftValue, rightValue);
+                case EQUAL_EQUAL:
+                    return Interpreter.isEqual(leftValue, rightValue);
+                case GREATER:
+                    checkNumberOperands(leftValue, rightValue);
+                    return (double)leftValue > (double)rightValue;
+                case GREATER_EQUAL:
+                    checkNumberOperands(leftValue, rightValue);
+                    return (double)leftValue >= (double)rightValue;
+                case LESS:
+                    checkNumberOperands(leftValue, rightValue);
+                    return (double)leftValue < (double)rightValue;
+                case LESS_EQUAL:
+                    checkNumberOperands(leftValue, rightValue);
+                    return (double)leftValue <= (double)rightValue;
+                case MINUS:
+                    checkNumberOperands(leftValue, rightValue);
+                    return (double)leftValue - (double)rightValue;
+                case PLUS:
+                    if (leftValue instanceof Double && rightValue instanceof Double) {
+                        return (double)leftValue + (double)rightValue;
+                    }
+
+                    if (leftValue instanceof CharSequence && rightValue instanceof CharSequence) {
+                        return LazyString.concat(leftValue, rightValue);
+                    }
+
+                    if (leftValue instanceof Double && rightValue instanceof CharSequence ||
+                        leftValue instanceof CharSequence && rightValue instanceof Double) {
+                        return LazyString.concat(leftValue, rightValue);
+                    }
+
+                    throw new RuntimeError(operator, "Operands must be numbers or strings.");
+                case SLASH:
+                    checkNumberOperands(leftValue, rightValue);
+                    return divide((double)leftValue, (double)rightValue);
+                case STAR:
+                    checkNumberOperands(leftValue, rightValue);
+                    return (double)leftValue * (double)rightValue;
+                default:
+                    break;
+            }
+
+            // Unreachable
+            return null;
+        }
+
+        double divide(double leftValue, double rightValue) {
+            if (rightValue == 0) {
+                throw new RuntimeError(operator, "Cannot divide by zero.");
+            }
+            return leftValue / rightValue;
+        }
+
+        private void checkNumberOperands(Object leftValue, Object rightValue) {
+            if (leftValue instanceof Double && rightValue instanceof Double) return;
+
+            throw new RuntimeError(operator, "Operands must be numbers.");
+        }
+
+        ExprNode left;
+        final Token operator;
+        ExprNode right;
+    }
+
+    // Picks a specialization the first time it runs
+    static class Uninitialized extends Binary {
+        Uninitialized(ExprNode left, Token operator, ExprNode right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Object leftValue = left.execute(frame);
+            Object rightValue = right.execute(frame);
+
+            replace(specialize(leftValue, rightValue));
+            return generic(leftValue, rightValue);
+        }
+
+        private Binary specialize(Object leftValue, Object rightValue) {
+            if (leftValue instanceof Double && rightValue instanceof Double) {
+                switch (operator.type) {
+                    case PLUS:          return new AddDouble(left, operator, right);
+                    case MINUS:         return new SubtractDouble(left, operator, right);
+                    case STAR:          return new MultiplyDouble(left, operator, right);
+                    case SLASH:         return new DivideDouble(left, operator, right);
+                    case LESS:          return new LessDouble(left, operator, right);
+                    case LESS_EQUAL:    return new LessEqualDouble(left, operator, right);
+                    case GREATER:       return new GreaterDouble(left, operator, right);
+                    case GREATER_EQUAL: return new GreaterEqualDouble(left, operator, right);
+                    default:
+                        break;
+                }
+            }
+
+            if (operator.type == TokenType.PLUS &&
+                leftValue instanceof CharSequence && rightValue instanceof CharSequence) {
+                return new AddString(left, operator, right);
+            }
+
+            return new Generic(left, operator, right);
+        }
+    }
+
+    static class Generic extends Binary {
+        Generic(ExprNode left, Token operator, ExprNode right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return generic(left.execute(frame), right.execute(frame));
+        }
+    }
+
+    // The double specializations below repeat their bodies on purpose:
+    // a shared implementation would give the JIT a single, megamorphic call
+    // site for the children of every arithmetic node
+    // Comparisons always produce booleans, so their truthiness is their value
+
+    static class AddDouble extends Binary {
+        AddDouble(ExprNode left, Token operator, ExprNode right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            try {
+                return executeDouble(frame);
+            } catch (UnexpectedResultException ex) {
+                return ex.result;
+            }
+        }
+
+        @Override
+        double executeDouble(Environment frame) throws UnexpectedResultException {
+            double leftValue;
+            try {
+                leftValue = left.executeDouble(frame);
+            } catch (UnexpectedResultException ex) {
+                return expectDouble(generalize(ex.result, right.execute(frame)));
+            }
+
+            double rightValue;
+            try {
+                rightValue = right.executeDouble(frame);
+            } catch (UnexpectedResultException ex) {
+                return expectDouble(generalize(leftValue, ex.result));
+            }
+
+            return leftValue + rightValue;
+        }
+    }
+
+    static class AddString extends Binary {
+        AddString(ExprNode left, Token operator, ExprNode right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Object leftValue = left.execute(frame);
+            Object rightValue = right.execute(frame);
+            if (leftValue instanceof CharSequence && rightValue instanceof CharSequence) {
+                return LazyString.concat(leftValue, rightValue);
+            }
+
+            return generalize(leftValue, rightValue);
+        }
+    }
+
+    static class SubtractDouble extends Binary {
+        SubtractDouble(ExprNode left, Token operator, ExprNode right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            try {
+                return executeDouble(frame);
+            } catch (UnexpectedResultException ex) {
+                return ex.result;
+            }
+        }
+
+        @Override
+        double executeDouble(Environment frame) throws UnexpectedResultException {
+            double leftValue;
+            try {
+                leftValue = left.executeDouble(frame);
+            } catch (UnexpectedResultException ex) {
+                return expectDouble(generalize(ex.result, right.execute(frame)));
+            }
+
+            double rightValue;
+            try {
+                rightValue = right.executeDouble(frame);
+            } catch (UnexpectedResultException ex) {
+                return expectDouble(generalize(leftValue, ex.result));
+            }
+
+            return leftValue - rightValue;
+        }
+    }
+
+    static class MultiplyDouble extends Binary {
+        MultiplyDouble(ExprNode left, Token operator, ExprNode right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            try {
+                return executeDouble(frame);
+            } catch (UnexpectedResultException ex) {
+                return ex.result;
+            }
+        }
+
+        @Override
+        double executeDouble(Environment frame) throws UnexpectedResultException {
+            double leftValue;
+            try {
+                leftValue = left.executeDouble(frame);
+            } catch (UnexpectedResultException ex) {
+                return expectDouble(generalize(ex.result, right.execute(frame)));
+            }
+
+            double rightValue;
+            try {
+                rightValue = right.executeDouble(frame);
+            } catch (UnexpectedResultException ex) {
+                return expectDouble(generalize(leftValue, ex.result));
+            }
+
+            return leftValue * rightValue;
+        }
+    }
+
+    static class DivideDouble extends Binary {
+        DivideDouble(ExprNode left, Token operator, ExprNode right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            try {
+                return executeDouble(frame);
+            } catch (UnexpectedResultException ex) {
+                return ex.result;
+            }
+        }
+
+        @Override
+        double executeDouble(Environment frame) throws UnexpectedResultException {
+            double leftValue;
+            try {
+                leftValue = left.executeDouble(frame);
+            } catch (UnexpectedResultException ex) {
+                return expectDouble(generalize(ex.result, right.execute(frame)));
+            }
+
+            double rightValue;
+            try {
+                rightValue = right.executeDouble(frame);
+            } catch (UnexpectedResultException ex) {
+                return expectDouble(generalize(leftValue, ex.result));
+            }
+
+            return divide(leftValue, rightValue);
+        }
+    }
+
+    static class LessDouble extends Binary {
+        LessDouble(ExprNode left, Token operator, ExprNode right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return executeCondition(frame);
+        }
+
+        @Override
+        boolean executeCondition(Environment frame) {
+            double leftValue;
+            try {
+                leftValue = left.executeDouble(frame);
+            } catch (UnexpectedResultException ex) {
+                return (boolean)generalize(ex.result, right.execute(frame));
+            }
+
+            double rightValue;
+            try {
+                rightValue = right.executeDouble(frame);
+            } catch (UnexpectedResultException ex) {
+                return (boolean)generalize(leftValue, ex.result);
+            }
+
+            return leftValue < rightValue;
+        }
+    }
+
+    static class LessEqualDouble extends Binary {
+        LessEqualDouble(ExprNode left, Token operator, ExprNode right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return executeCondition(frame);
+        }
+
+        @Override
+        boolean executeCondition(Environment frame) {
+            double leftValue;
+            try {
+                leftValue = left.executeDouble(frame);
+            } catch (UnexpectedResultException ex) {
+                return (boolean)generalize(ex.result, right.execute(frame));
+            }
+
+            double rightValue;
+            try {
+                rightValue = right.executeDouble(frame);
+            } catch (UnexpectedResultException ex) {
+                return (boolean)generalize(leftValue, ex.result);
+            }
+
+            return leftValue <= rightValue;
+        }
+    }
+
+    static class GreaterDouble extends Binary {
+        GreaterDouble(ExprNode left, Token operator, ExprNode right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return executeCondition(frame);
+        }
+
+        @Override
+        boolean executeCondition(Environment frame) {
+            double leftValue;
+            try {
+                leftValue = left.executeDouble(frame);
+            } catch (UnexpectedResultException ex) {
+                return (boolean)generalize(ex.result, right.execute(frame));
+            }
+
+            double rightValue;
+            try {
+                rightValue = right.executeDouble(frame);
+            } catch (UnexpectedResultException ex) {
+                return (boolean)generalize(leftValue, ex.result);
+            }
+
+            return leftValue > rightValue;
+        }
+    }
+
+    static class GreaterEqualDouble extends Binary {
+        GreaterEqualDouble(ExprNode left, Token operator, ExprNode right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return executeCondition(frame);
+        }
+
+        @Override
+        boolean executeCondition(Environment frame) {
+            double leftValue;
+            try {
+                leftValue = left.executeDouble(frame);
+            } catch (UnexpectedResultException ex) {
+                return (boolean)generalize(ex.result, right.execute(frame));
+            }
+
+            double rightValue;
+            try {
+                rightValue = right.executeDouble(frame);
+            } catch (UnexpectedResultException ex) {
+                return (boolean)generalize(leftValue, ex.result);
+            }
+
+            return leftValue >= rightValue;
+        }
+    }
+
+    static class And extends ExprNode {
+        And(ExprNode left, ExprNode right) {
+            this.left = adopt(left);
+            this.right = adopt(right);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Object leftValue = left.execute(frame);
+            if (!Interpreter.isTruthy(leftValue)) return leftValue;
+            return right.execute(frame);
+        }
+
+        @Override
+        boolean executeCondition(Environment frame) {
+            return left.executeCondition(frame) && right.executeCondition(frame);
+        }
+
+        @Override
+        void replaceChild(Node oldChild, Node newChild) {
+            if (left == oldChild) left = (ExprNode)newChild;
+            if (right == oldChild) right = (ExprNode)newChild;
+        }
+
+        ExprNode left;
+        ExprNode right;
+    }
+
+    static class Or extends ExprNode {
+        Or(ExprNode left, ExprNode right) {
+            this.left = adopt(left);
+            this.right = adopt(right);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Object leftValue = left.execute(frame);
+            if (Interpreter.isTruthy(leftValue)) return leftValue;
+            return right.execute(frame);
+        }
+
+        @Override
+        boolean executeCondition(Environment frame) {
+            return left.executeCondition(frame) || right.executeCondition(frame);
+        }
+
+        @Override
+        void replaceChild(Node oldChild, Node newChild) {
+            if (left == oldChild) left = (ExprNode)newChild;
+            if (right == oldChild) right = (ExprNode)newChild;
+        }
+
+        ExprNode left;
+        ExprNode right;
+    }
+
+    static class Not extends ExprNode {
+        Not(ExprNode right) {
+            this.right = adopt(right);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return !right.executeCondition(frame);
+        }
+
+        @Override
+        boolean executeCondition(Environment frame) {
+            return !right.executeCondition(frame);
+        }
+
+        @Override
+        void replaceChild(Node oldChild, Node newChild) {
+            right = (ExprNode)newChild;
+        }
+
+        ExprNode right;
+    }
+
+    static class Negate extends ExprNode {
+        Negate(Token operator, ExprNode right) {
+            this.operator = operator;
+            this.right = adopt(right);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Object value = right.execute(frame);
+            if (!(value instanceof Double)) {
+                throw new RuntimeError(operator, "Operand must be a number");
+            }
+            return -(double)value;
+        }
+
+        @Override
+        double executeDouble(Environment frame) {
+            try {
+                return -right.executeDouble(frame);
+            } catch (UnexpectedResultException ex) {
+                throw new RuntimeError(operator, "Operand must be a number");
+            }
+        }
+
+        @Override
+        void replaceChild(Node oldChild, Node newChild) {
+            right = (ExprNode)newChild;
+        }
+
+        final Token operator;
+        ExprNode right;
+    }
+
+    static class Call extends ExprNode {
+        Call(ExprNode callee, Token paren, ExprNode[] arguments) {
+            this.callee = adopt(callee);
+            this.paren = paren;
+            this.arguments = arguments;
+            for (ExprNode argument : arguments) {
+                adopt(argument);
+            }
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return execute(frame, false);
+        }
+
+        // Makes the call from tail position, where a Cynch callee is handed
+        // to the calling NodeFunction instead of being run here
+        Object executeTail(Environment frame) {
+            return execute(frame, true);
+        }
+
+        private Object execute(Environment frame, boolean tail) {
+            Object function = callee.execute(frame);
+            Object[] values = executeArguments(frame);
+
+            if (function instanceof NodeFunction) {
+                NodeFunction target = (NodeFunction)function;
+                checkArity(target.arity(), values.length);
+
+                if (tail) throw new TailCallException(target, values);
+                return target.call(values);
+            }
+
+            if (function instanceof CynchCallable) {
+                CynchCallable target = (CynchCallable)function;
+                checkArity(target.arity(), values.length);
+
+                // Natives never touch the tree-walking interpreter
+                return Interpreter.callNative(target, null, Arrays.asList(values), paren);
+            }
+
+            throw new RuntimeError(paren, "Can only call functions and classes.");
+        }
+
+        // Evaluates the callee and arguments here and makes the call on another thread
+        Object spawn(Environment frame) {
+            Object function = callee.execute(frame);
+            Object[] values = executeArguments(frame);
+
+            if (function instanceof NodeFunction) {
+                NodeFunction target = (NodeFunction)function;
+                checkArity(target.arity(), values.length);
+
+                return CynchFuture.spawn(() -> target.call(values));
+            }
+
+            if (function instanceof CynchCallable) {
+                CynchCallable target = (CynchCallable)function;
+                checkArity(target.arity(), values.length);
+
+                return CynchFuture.spawn(() ->
+                    Interpreter.callNative(target, null, Arrays.asList(values), paren));
+            }
+
+            throw new RuntimeError(paren, "Can only call functions and classes.");
+        }
+
+        private Object[] executeArguments(Environment frame) {
+            Object[] values = new Object[arguments.length];
+            for (int i = 0; i < arguments.length; i++) {
+                values[i] = arguments[i].execute(frame);
+            }
+            return values;
+        }
+
+        private void checkArity(int arity, int count) {
+            if (count != arity) {
+                throw new RuntimeError(paren, "Expected " +
+                    arity + " arguments but got " +
+                    count + ".");
+            }
+        }
+
+        @Override
+        void replaceChild(Node oldChild, Node newChild) {
+            if (callee == oldChild) callee = (ExprNode)newChild;
+            for (int i = 0; i < arguments.length; i++) {
+                if (arguments[i] == oldChild) arguments[i] = (ExprNode)newChild;
+            }
+        }
+
+        ExprNode callee;
+        final Token paren;
+        final ExprNode[] arguments;
+    }
+
+    // The call is a child that is never replaced itself, only its children are
+    static class Spawn extends ExprNode {
+        Spawn(Call call) {
+            this.call = adopt(call);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return call.spawn(frame);
+        }
+
+        final Call call;
+    }
+
+    static class Await extends ExprNode {
+        Await(Token keyword, ExprNode value) {
+            this.keyword = keyword;
+            this.value = adopt(value);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            return CynchFuture.await(value.execute(frame), keyword);
+        }
+
+        @Override
+        void replaceChild(Node oldChild, Node newChild) {
+            value = (ExprNode)newChild;
+        }
+
+        final Token keyword;
+        ExprNode value;
+    }
+
+    static class Array extends ExprNode {
+        Array(ExprNode[] elements) {
+            this.elements = elements;
+            for (ExprNode element : elements) {
+                adopt(element);
+            }
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            CynchArray array = new CynchArray(elements.length);
+            for (ExprNode element : elements) {
+                array.push(element.execute(frame));
+            }
+            return array;
+        }
+
+        @Override
+        void replaceChild(Node oldChild, Node newChild) {
+            for (int i = 0; i < elements.length; i++) {
+                if (elements[i] == oldChild) elements[i] = (ExprNode)newChild;
+            }
+        }
+
+        final ExprNode[] elements;
+    }
+
+    static class Map extends ExprNode {
+        Map(Token brace, ExprNode[] keys, ExprNode[] values) {
+            this.brace = brace;
+            this.keys = keys;
+            this.values = values;
+            for (int i = 0; i < keys.length; i++) {
+                adopt(keys[i]);
+                adopt(values[i]);
+            }
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            CynchMap map = new CynchMap(keys.length);
+            for (int i = 0; i < keys.length; i++) {
+                Object key = keys[i].execute(frame);
+                Object value = values[i].execute(frame);
+                map.put(CynchMap.checkKey(key, brace), value);
+            }
+            return map;
+        }
+
+        @Override
+        void replaceChild(Node oldChild, Node newChild) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == oldChild) keys[i] = (ExprNode)newChild;
+                if (values[i] == oldChild) values[i] = (ExprNode)newChild;
+            }
+        }
+
+        final Token brace;
+        final ExprNode[] keys;
+        final ExprNode[] values;
+    }
+
+    // Indexes with an unboxed index, which is also how a map is looked up
+    // by a number key. Through executeDouble, the element of a numeric array
+    // is handed on without boxing it either.
+    // An index that is not a number takes the generic path
+    static class Index extends ExprNode {
+        Index(ExprNode object, Token bracket, ExprNode index) {
+            this.object = adopt(object);
+            this.bracket = bracket;
+            this.index = adopt(index);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Object target = object.execute(frame);
+
+            double position;
+            try {
+                position = index.executeDouble(frame);
+            } catch (UnexpectedResultException ex) {
+                return Interpreter.getIndex(target, ex.result, bracket);
+            }
+
+            if (target instanceof CynchMap) return ((CynchMap)target).get(position);
+
+            CynchArray array = Interpreter.checkIndexed(target, bracket);
+            return array.get(array.checkIndex(position, bracket));
+        }
+
+        @Override
+        double executeDouble(Environment frame) throws UnexpectedResultException {
+            Object target = object.execute(frame);
+
+            double position;
+            try {
+                position = index.executeDouble(frame);
+            } catch (UnexpectedResultException ex) {
+                return expectDouble(Interpreter.getIndex(target, ex.result, bracket));
+            }
+
+            if (target instanceof CynchMap) return expectDouble(((CynchMap)target).get(position));
+
+            CynchArray array = Interpreter.checkIndexed(target, bracket);
+            int i = array.checkIndex(position, bracket);
+            if (array.isNumeric()) return array.getDouble(i);
+            return expectDouble(array.get(i));
+        }
+
+        @Override
+        void replaceChild(Node oldChild, Node newChild) {
+            if (object == oldChild) object = (ExprNode)newChild;
+            if (index == oldChild) index = (ExprNode)newChild;
+        }
+
+        ExprNode object;
+        final Token bracket;
+        ExprNode index;
+    }
+
+    // Stores a number into a numeric array without boxing it
+    // Evaluating the value may change the array, so it is checked last
+    static class SetIndex extends ExprNode {
+        SetIndex(ExprNode object, Token bracket, ExprNode index, ExprNode value) {
+            this.object = adopt(object);
+            this.bracket = bracket;
+            this.index = adopt(index);
+            this.value = adopt(value);
+        }
+
+        @Override
+        Object execute(Environment frame) {
+            Object target = object.execute(frame);
+
+            double position;
+            try {
+                position = index.executeDouble(frame);
+            } catch (UnexpectedResultException ex) {
+                Object result = value.execute(frame);
+                Interpreter.setIndex(target, ex.result, result, bracket);
+                return result;
+            }
+
+            if (target instanceof CynchArray && ((CynchArray)target).isNumeric()) {
+                double result;
+                try {
+                    result = value.executeDouble(frame);
+                } catch (UnexpectedResultException ex) {
+                    Interpreter.setIndex(target, position, ex.result, bracket);
+                    return ex.result;
+                }
+
+                CynchArray array = (CynchArray)target;
+                array.setDouble(array.checkIndex(position, bracket), result);
+                return result;
+            }
+
+            Object result = value.execute(frame);
+            if (target instanceof CynchMap) {
+                ((CynchMap)target).put(position, result);
+            } else {
+                Interpreter.setIndex(target, position, result, bracket);
+            }
+            return result;
+        }
+
+        @Override
+        void replaceChild(Node oldChild, Node newChild) {
+            if (object == oldChild) object = (ExprNode)newChild;
+            if (index == oldChild) index = (ExprNode)newChild;
+            if (value == oldChild) value = (ExprNode)newChild;
+        }
+
+        ExprNode object;
+        final Token bracket;
+        ExprNode index;
+        ExprNode value;
+    }
+}
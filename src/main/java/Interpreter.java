@@ -1,18 +1,66 @@
 package main.java;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 class Interpreter implements Expr.Visitor<Object>,
-                             Stmt.Visitor<Void> {
+                             Stmt.Visitor<Completion> {
+
+    private static final Cell[] NO_UPVALUES = new Cell[0];
+    private static final CynchCallable[] NO_CALLEES = new CynchCallable[0];
+    private static final Environment.Global[] NO_GLOBALS = new Environment.Global[0];
+
+    final Environment globals;
+    private final Output output;
+    private final Reporter reporter;
+
+    // The memo caches of the script that is running, by memo index
+    private MemoCache[] memoCaches;
+
+    // The last callee of every call site of the running function's script,
+    // by site number. Each script run gets its own, which the functions it
+    // declares carry along, so a script shared between contexts is never
+    // changed by running it.
+    private CynchCallable[] callees = NO_CALLEES;
+
+    // The Globals of the running function's script, by the numbers the
+    // Resolver gave its global names, carried along the same way
+    private Environment.Global[] scriptGlobals = NO_GLOBALS;
+
+    // Every call gets a flat frame on this stack, holding all the locals of
+    // the function. Locals a closure captures are boxed in Cells, which the
+    // closure reaches through its upvalues, so frames are freed on return.
+    private Object[] stack = new Object[256];
+    private int base = 0;
+    private int top = 0;
+    private Cell[] upvalues = NO_UPVALUES;
+
+    // Set by a return statement and picked up by CynchFunction.call
+    private Object returnValue = null;
+    private CynchFunction tailFunction = null;
+    private List<Object> tailArguments = null;
+
+    Interpreter(Output output, Reporter reporter) {
+        this.globals = new Environment();
+        this.output = output;
+        this.reporter = reporter;
+        defineNatives(globals, output);
+    }
 
-    final Environment globals = new Environment();
-    private Environment environment = globals;
-    private final Map<Expr, Integer> locals = new HashMap<>();
+    // An interpreter for a spawned call, with a stack of its own and
+    // everything else shared with the one that spawned it
+    Interpreter(Interpreter parent) {
+        this.globals = parent.globals;
+        this.output = parent.output;
+        this.reporter = parent.reporter;
+        this.memoCaches = parent.memoCaches;
+        this.callees = parent.callees;
+        this.scriptGlobals = parent.scriptGlobals;
+    }
 
-    Interpreter() {
+    // Natives are shared by every engine, so they are defined separately
+    static void defineNatives(Environment globals, Output output) {
         globals.define("clock", new CynchCallable() {
             @Override
             public int arity() {return 0;}
@@ -25,16 +73,213 @@ class Interpreter implements Expr.Visitor<Object>,
             @Override
             public String toString() {return "<native fn>";}
         });
+
+        // The function form of the print statement, e.g. to pass it around
+        globals.define("print", new CynchCallable() {
+            @Override
+            public int arity() {return 1;}
+
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                output.println(stringify(arguments.get(0)));
+                return null;
+            }
+
+            @Override
+            public String toString() {return "<native fn>";}
+        });
+
+        // Arrays are built with literals, these grow, shrink and measure them
+        globals.define("length", new CynchCallable() {
+            @Override
+            public int arity() {return 1;}
+
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                CynchArray array = checkArray(arguments.get(0), "Can only take the length of arrays.");
+                return (double)array.length();
+            }
+
+            @Override
+            public String toString() {return "<native fn>";}
+        });
+
+        globals.define("push", new CynchCallable() {
+            @Override
+            public int arity() {return 2;}
+
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                CynchArray array = checkArray(arguments.get(0), "Can only push onto arrays.");
+                array.push(arguments.get(1));
+                return null;
+            }
+
+            @Override
+            public String toString() {return "<native fn>";}
+        });
+
+        globals.define("pop", new CynchCallable() {
+            @Override
+            public int arity() {return 1;}
+
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                CynchArray array = checkArray(arguments.get(0), "Can only pop from arrays.");
+                if (array.length() == 0) {
+                    throw new RuntimeError(null, "Cannot pop from an empty array.");
+                }
+
+                return array.pop();
+            }
+
+            @Override
+            public String toString() {return "<native fn>";}
+        });
+
+        // Maps are built with literals, these measure, list and shrink them
+        globals.define("size", new CynchCallable() {
+            @Override
+            public int arity() {return 1;}
+
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                CynchMap map = checkMap(arguments.get(0), "Can only take the size of maps.");
+                return (double)map.size();
+            }
+
+            @Override
+            public String toString() {return "<native fn>";}
+        });
+
+        globals.define("keys", new CynchCallable() {
+            @Override
+            public int arity() {return 1;}
+
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                CynchMap map = checkMap(arguments.get(0), "Can only list the keys of maps.");
+                return map.keys();
+            }
+
+            @Override
+            public String toString() {return "<native fn>";}
+        });
+
+        // Returns whether the map held the key
+        globals.define("delete", new CynchCallable() {
+            @Override
+            public int arity() {return 2;}
+
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                CynchMap map = checkMap(arguments.get(0), "Can only delete from maps.");
+                return map.remove(CynchMap.checkKey(arguments.get(1), null));
+            }
+
+            @Override
+            public String toString() {return "<native fn>";}
+        });
+
+        // Channels hand values between spawned calls
+        globals.define("channel", new CynchCallable() {
+            @Override
+            public int arity() {return 1;}
+
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                Object capacity = arguments.get(0);
+                if (!(capacity instanceof Double) || (double)capacity < 1 ||
+                    (double)capacity != Math.floor((double)capacity)) {
+                    throw new RuntimeError(null, "Channel capacity must be a positive integer.");
+                }
+
+                return new Channel((int)Math.min((double)capacity, Integer.MAX_VALUE));
+            }
+
+            @Override
+            public String toString() {return "<native fn>";}
+        });
+
+        globals.define("send", new CynchCallable() {
+            @Override
+            public int arity() {return 2;}
+
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                if (!(arguments.get(0) instanceof Channel)) {
+                    throw new RuntimeError(null, "Can only send to channels.");
+                }
+
+                ((Channel)arguments.get(0)).send(arguments.get(1));
+                return null;
+            }
+
+            @Override
+            public String toString() {return "<native fn>";}
+        });
+
+        globals.define("receive", new CynchCallable() {
+            @Override
+            public int arity() {return 1;}
+
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                if (!(arguments.get(0) instanceof Channel)) {
+                    throw new RuntimeError(null, "Can only receive from channels.");
+                }
+
+                return ((Channel)arguments.get(0)).receive();
+            }
+
+            @Override
+            public String toString() {return "<native fn>";}
+        });
+    }
+
+    private static CynchArray checkArray(Object value, String message) {
+        if (value instanceof CynchArray) return (CynchArray)value;
+
+        throw new RuntimeError(null, message);
+    }
+
+    private static CynchMap checkMap(Object value, String message) {
+        if (value instanceof CynchMap) return (CynchMap)value;
+
+        throw new RuntimeError(null, message);
+    }
+
+    // Natives do not know where they are called from, so an error they
+    // throw without a token is given the token of the call
+    static Object callNative(CynchCallable function, Interpreter interpreter,
+                             List<Object> arguments, Token call) {
+        try {
+            return function.call(interpreter, arguments);
+        } catch (RuntimeError error) {
+            if (error.token != null) throw error;
+            throw new RuntimeError(call, error.getMessage());
+        }
     }
     
     // Public API is only one method
-    void interpret(List<Stmt> statements) {
+    // The locals of top-level blocks live in a frame at the bottom of the stack
+    void interpret(Stmt.Block program, MemoCache[] memoCaches) {
+        this.memoCaches = memoCaches;
+        this.callees = new CynchCallable[program.callSites];
+        this.scriptGlobals = globals.link(program.globals);
+
         try {
-            for (Stmt statement : statements) {
+            top = program.frameSize;
+            ensureStack(top);
+
+            for (Stmt statement : program.statements) {
                 execute(statement);
             }
         } catch (RuntimeError error) {
-            Cynch.runtimeError(error);
+            reporter.runtimeError(error);
+        } finally {
+            Arrays.fill(stack, 0, top, null);
+            top = 0;
         }
     }
 
@@ -82,16 +327,19 @@ class Interpreter implements Expr.Visitor<Object>,
 
     @Override
     public Object visitVariableExpr(Expr.Variable expr) {
-        return lookUpVariable(expr.name, expr);
+        return lookUpVariable(expr);
     }
 
-    private Object lookUpVariable(Token name, Expr expr) {
-        Integer distance = locals.get(expr);
-        if (distance != null) {
-            return environment.getAt(distance, name.lexeme);
-        } else {
-            return globals.get(name);
+    private Object lookUpVariable(Expr.Variable expr) {
+        if (expr.index >= 0) {
+            Object value = stack[base + expr.index];
+            if (value instanceof Cell) return ((Cell)value).value;
+            return value;
         }
+
+        if (expr.upvalue >= 0) return upvalues[expr.upvalue].value;
+
+        return scriptGlobals[expr.global].get(expr.name);
     }
 
     @Override
@@ -125,22 +373,25 @@ class Interpreter implements Expr.Visitor<Object>,
                     return (double)left + (double)right;
                 }
 
-                if (left instanceof String && right instanceof String) {
-                    return (String)left + (String)right;
+                // Strings are concatenated lazily, see LazyString
+                if (left instanceof CharSequence && right instanceof CharSequence) {
+                    return LazyString.concat(left, right);
                 }
 
-                if (left instanceof Double && right instanceof String ||
-                    left instanceof String && right instanceof Double) {
-                    return stringify(left) + stringify(right);
+                if (left instanceof Double && right instanceof CharSequence ||
+                    left instanceof CharSequence && right instanceof Double) {
+                    return LazyString.concat(left, right);
                 }
 
                 throw new RuntimeError(expr.operator, "Operands must be numbers or strings.");
             case SLASH:
+                checkNumberOperands(expr.operator, left, right);
                 if ((double)right == 0) {
                     throw new RuntimeError(expr.operator, "Cannot divide by zero.");
                 }
                 return (double)left / (double)right;
             case STAR:
+                checkNumberOperands(expr.operator, left, right);
                 return (double)left * (double)right;
             default:
                 break;
@@ -152,25 +403,119 @@ class Interpreter implements Expr.Visitor<Object>,
 
     @Override
     public Object visitCallExpr(Expr.Call expr) {
+        List<Object> arguments = new ArrayList<>(expr.arguments.size());
+        CynchCallable function = callee(expr, arguments);
+
+        return invoke(function, arguments, expr);
+    }
+
+    // Evaluates the callee and the arguments, which are added to 'arguments',
+    // and returns the callee once it is known to take them
+    // Every call site remembers what it called last, already checked, so
+    // calling the same function again skips the checks. Assigning anything
+    // else to the callee's variable makes the next call check it again.
+    private CynchCallable callee(Expr.Call expr, List<Object> arguments) {
         Object callee = evaluate(expr.callee);
+        evaluateArguments(expr, arguments);
+
+        CynchCallable cached = callees[expr.site];
+        if (cached != null && cached == callee) return cached;
+
+        CynchCallable function = checkCall(expr, callee);
+        callees[expr.site] = function;
+        return function;
+    }
+
+    // Calls and statements go through invoke(), tailCalled() and execute(),
+    // which ProfilingInterpreter overrides
+    Object invoke(CynchCallable function, List<Object> arguments, Expr.Call call) {
+        if (function instanceof CynchFunction) return function.call(this, arguments);
+
+        return callNative(function, this, arguments, call.paren);
+    }
+
+    void tailCalled(CynchFunction function) {}
+
+    Interpreter spawned() {
+        return new Interpreter(this);
+    }
+
+    // The callee and arguments are evaluated here, the call itself runs on
+    // another thread with an interpreter of its own
+    @Override
+    public Object visitSpawnExpr(Expr.Spawn expr) {
+        List<Object> arguments = new ArrayList<>(expr.call.arguments.size());
+        CynchCallable function = callee(expr.call, arguments);
+
+        Interpreter interpreter = spawned();
+        return CynchFuture.spawn(() -> interpreter.invoke(function, arguments, expr.call));
+    }
+
+    @Override
+    public Object visitAwaitExpr(Expr.Await expr) {
+        return CynchFuture.await(evaluate(expr.value), expr.keyword);
+    }
+
+    @Override
+    public Object visitArrayExpr(Expr.Array expr) {
+        CynchArray array = new CynchArray(expr.elements.size());
+        for (Expr element : expr.elements) {
+            array.push(evaluate(element));
+        }
+
+        return array;
+    }
 
-        List<Object> arguments = new ArrayList<>();
+    @Override
+    public Object visitMapExpr(Expr.Map expr) {
+        CynchMap map = new CynchMap(expr.keys.size());
+        for (int i = 0; i < expr.keys.size(); i++) {
+            Object key = evaluate(expr.keys.get(i));
+            Object value = evaluate(expr.values.get(i));
+            map.put(CynchMap.checkKey(key, expr.brace), value);
+        }
+
+        return map;
+    }
+
+    @Override
+    public Object visitIndexExpr(Expr.Index expr) {
+        Object object = evaluate(expr.object);
+        Object index = evaluate(expr.index);
+
+        return getIndex(object, index, expr.bracket);
+    }
+
+    @Override
+    public Object visitSetIndexExpr(Expr.SetIndex expr) {
+        Object object = evaluate(expr.object);
+        Object index = evaluate(expr.index);
+        Object value = evaluate(expr.value);
+
+        setIndex(object, index, value, expr.bracket);
+        return value;
+    }
+
+    private void evaluateArguments(Expr.Call expr, List<Object> arguments) {
         for (Expr argument : expr.arguments) {
             arguments.add(evaluate(argument));
         }
+    }
 
+    // Makes sure the callee can be called with the arguments of the call
+    private CynchCallable checkCall(Expr.Call expr, Object callee) {
         if (!(callee instanceof CynchCallable)) {
             throw new RuntimeError(expr.paren, "Can only call functions and classes.");
         }
 
         CynchCallable function = (CynchCallable)callee;
-        if (arguments.size() != function.arity()) {
+        if (expr.arguments.size() != function.arity()) {
             throw new RuntimeError(expr.paren, "Expected " + 
                 function.arity() + " arguments but got " + 
-                arguments.size() + ".");
+                expr.arguments.size() + ".");
         }
 
-        return function.call(this, arguments);
+        return function;
     }
 
     // Throws a RuntimeError for an illegal unary operand
@@ -192,119 +537,303 @@ class Interpreter implements Expr.Visitor<Object>,
     }
 
     // Executes the given statement based on its type (ex. print)
-    private void execute(Stmt stmt) {
-        stmt.accept(this);
+    Completion execute(Stmt stmt) {
+        return stmt.accept(this);
     }
 
-    void resolve(Expr expr, int depth) {
-        locals.put(expr, depth);
+    // Top-level declarations have no index and are defined by name
+    // A captured local gets a new Cell each time its declaration runs
+    private void define(int index, boolean captured, Token name, Object value) {
+        if (index < 0) {
+            globals.define(name.lexeme, value);
+        } else {
+            stack[base + index] = captured ? new Cell(value) : value;
+        }
     }
 
-    @Override
-    public Void visitBlockStmt(Stmt.Block stmt) {
-        executeBlock(stmt.statements, new Environment(environment));
-        return null;
+    private void ensureStack(int size) {
+        if (size > stack.length) {
+            stack = Arrays.copyOf(stack, Math.max(size, stack.length * 2));
+        }
     }
 
-    void executeBlock(List<Stmt> statements, Environment environment) {
-        Environment previous = this.environment;
+    // Runs a Cynch function in a new frame on top of the stack
+    // A call in tail position replaces the function and reuses its frame
+    Object call(CynchFunction function, List<Object> arguments) {
+        int callerBase = base;
+        Cell[] callerUpvalues = upvalues;
+        CynchCallable[] callerCallees = callees;
+        Environment.Global[] callerGlobals = scriptGlobals;
+        base = top;
 
         try {
-            this.environment = environment;
+            for (;;) {
+                Stmt.Function declaration = function.declaration;
+                top = base + declaration.localCount;
+                ensureStack(top);
 
-            for (Stmt statement : statements) {
-                execute(statement);
+                for (int i = 0; i < arguments.size(); i++) {
+                    define(i, declaration.capturedParams[i], null, arguments.get(i));
+                }
+                upvalues = function.upvalues;
+                callees = function.callees;
+                scriptGlobals = function.globals;
+
+                Completion completion = executeBlock(declaration.body);
+                if (completion == Completion.RETURN) return takeReturnValue();
+                if (completion != Completion.TAIL_CALL) return null;
+
+                Arrays.fill(stack, base, top, null);
+                function = takeTailFunction();
+                arguments = takeTailArguments();
+                tailCalled(function);
             }
         } finally {
-            this.environment = previous;
+            Arrays.fill(stack, base, top, null);
+            top = base;
+            base = callerBase;
+            upvalues = callerUpvalues;
+            callees = callerCallees;
+            scriptGlobals = callerGlobals;
         }
     }
 
+    // Blocks only scope names, their locals are part of the function's frame
     @Override
-    public Void visitBreakStmt(Stmt.Break stmt) {
-        throw new BreakException();
+    public Completion visitBlockStmt(Stmt.Block stmt) {
+        return executeBlock(stmt.statements);
+    }
+
+    // Stops at the first statement that breaks or returns and passes its signal on
+    Completion executeBlock(List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            Completion completion = execute(statement);
+            if (completion != Completion.NORMAL) return completion;
+        }
+
+        return Completion.NORMAL;
+    }
+
+    // Hands over the value of the last return statement
+    Object takeReturnValue() {
+        Object value = returnValue;
+        returnValue = null;
+        return value;
+    }
+
+    // Hands over the function and arguments of the last tail call
+    CynchFunction takeTailFunction() {
+        CynchFunction function = tailFunction;
+        tailFunction = null;
+        return function;
+    }
+
+    List<Object> takeTailArguments() {
+        List<Object> arguments = tailArguments;
+        tailArguments = null;
+        return arguments;
     }
 
     @Override
-    public Void visitExpressionStmt(Stmt.Expression stmt) {
+    public Completion visitBreakStmt(Stmt.Break stmt) {
+        return Completion.BREAK;
+    }
+
+    @Override
+    public Completion visitExpressionStmt(Stmt.Expression stmt) {
         evaluate(stmt.expression);
-        return null;
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visitFunctionStmt(Stmt.Function stmt)  {
-        CynchFunction function = new CynchFunction(stmt, environment);
-        environment.define(stmt.name.lexeme, function);
-        return null;
+    public Completion visitFunctionStmt(Stmt.Function stmt)  {
+        if (!stmt.captured) {
+            define(stmt.index, false, stmt.name,
+                   new CynchFunction(stmt, capture(stmt), memoCache(stmt),
+                                     callees, scriptGlobals));
+            return Completion.NORMAL;
+        }
+
+        // A function that refers to itself captures the cell it is stored in
+        Cell cell = new Cell(null);
+        stack[base + stmt.index] = cell;
+        cell.value = new CynchFunction(stmt, capture(stmt), memoCache(stmt),
+                                       callees, scriptGlobals);
+        return Completion.NORMAL;
+    }
+
+    private MemoCache memoCache(Stmt.Function stmt) {
+        return stmt.memoIndex < 0 ? null : memoCaches[stmt.memoIndex];
+    }
+
+    // Collects the cells a new closure refers to, see Resolver.Frame
+    private Cell[] capture(Stmt.Function stmt) {
+        if (stmt.captures.length == 0) return NO_UPVALUES;
+
+        Cell[] cells = new Cell[stmt.captures.length];
+        for (int i = 0; i < cells.length; i++) {
+            int capture = stmt.captures[i];
+            if (capture >= 0) {
+                cells[i] = (Cell)stack[base + capture];
+            } else {
+                cells[i] = upvalues[-1 - capture];
+            }
+        }
+
+        return cells;
     }
 
     @Override
-    public Void visitIfStmt(Stmt.If stmt) {
+    public Completion visitIfStmt(Stmt.If stmt) {
         if (isTruthy(evaluate(stmt.condition))) {
-            execute(stmt.thenBranch);
+            return execute(stmt.thenBranch);
         } else if (stmt.elseBranch != null) {
-            execute(stmt.elseBranch);
+            return execute(stmt.elseBranch);
         }
 
-        return null;
+        return Completion.NORMAL;
     }
 
     // Evaluate the given statement and print the value
     @Override
-    public Void visitPrintStmt(Stmt.Print stmt) {
+    public Completion visitPrintStmt(Stmt.Print stmt) {
         Object value = evaluate(stmt.expression);
-        System.out.println(stringify(value));
-        return null;
+        output.println(stringify(value));
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visitReturnStmt(Stmt.Return stmt) {
+    public Completion visitReturnStmt(Stmt.Return stmt) {
+        if (stmt.tailCall) return tailCall((Expr.Call)stmt.value);
+
         Object value = null;
         if (stmt.value != null) value = evaluate(stmt.value);
 
-        throw new Return(value);
+        returnValue = value;
+        return Completion.RETURN;
+    }
+
+    // Cynch functions are left for CynchFunction.call to run in a loop,
+    // so tail recursion does not grow the Java stack
+    private Completion tailCall(Expr.Call expr) {
+        List<Object> arguments = new ArrayList<>(expr.arguments.size());
+        CynchCallable function = callee(expr, arguments);
+
+        if (function instanceof CynchFunction) {
+            tailFunction = (CynchFunction)function;
+            tailArguments = arguments;
+            return Completion.TAIL_CALL;
+        }
+
+        returnValue = invoke(function, arguments, expr);
+        return Completion.RETURN;
     }
 
     @Override
-    public Void visitVarStmt(Stmt.Var stmt) {
+    public Completion visitVarStmt(Stmt.Var stmt) {
         Object value = null;
         if (stmt.initializer != null) {
             value = evaluate(stmt.initializer);
         }
 
-        environment.define(stmt.name.lexeme, value);
-        return null;
+        define(stmt.index, stmt.captured, stmt.name, value);
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visitWhileStmt(Stmt.While stmt) {
-        try {
-            while (isTruthy(evaluate(stmt.condition))) {
-                execute(stmt.body);
-            }
-        } catch (BreakException ex) {
+    public Completion visitWhileStmt(Stmt.While stmt) {
+        while (isTruthy(evaluate(stmt.condition))) {
+            Completion completion = execute(stmt.body);
+            if (completion == Completion.BREAK) break;
+            if (completion != Completion.NORMAL) return completion;
+        }
 
+        return Completion.NORMAL;
+    }
+
+    @Override
+    public Completion visitForStmt(Stmt.For stmt) {
+        if (stmt.initializer != null) execute(stmt.initializer);
+
+        if (stmt.counted) return executeCountedFor(stmt);
+
+        while (isTruthy(evaluate(stmt.condition))) {
+            Completion completion = execute(stmt.body);
+            if (completion == Completion.BREAK) break;
+            if (completion != Completion.NORMAL) return completion;
+
+            if (stmt.increment != null) evaluate(stmt.increment);
         }
-        
-        return null;
+
+        return Completion.NORMAL;
+    }
+
+    // The loop variable is compared and stepped in its slot directly,
+    // only the bound is evaluated as an expression on every iteration
+    private Completion executeCountedFor(Stmt.For stmt) {
+        Expr.Binary condition = (Expr.Binary)stmt.condition;
+        Expr.Binary increment = (Expr.Binary)((Expr.Assign)stmt.increment).value;
+        int index = ((Expr.Variable)condition.left).index;
+
+        double step = (double)((Expr.Literal)increment.right).value;
+        if (increment.operator.type == TokenType.MINUS) step = -step;
+
+        for (;;) {
+            Object counter = stack[base + index];
+            Object bound = evaluate(condition.right);
+            checkNumberOperands(condition.operator, counter, bound);
+
+            double i = (double)counter;
+            double n = (double)bound;
+            boolean running;
+            switch (condition.operator.type) {
+                case GREATER:       running = i > n; break;
+                case GREATER_EQUAL: running = i >= n; break;
+                case LESS:          running = i < n; break;
+                default:            running = i <= n; break;
+            }
+            if (!running) break;
+
+            Completion completion = execute(stmt.body);
+            if (completion == Completion.BREAK) break;
+            if (completion != Completion.NORMAL) return completion;
+
+            // The body may have changed the variable to something else entirely
+            counter = stack[base + index];
+            if (counter instanceof Double) {
+                stack[base + index] = (double)counter + step;
+            } else {
+                evaluate(stmt.increment);
+            }
+        }
+
+        return Completion.NORMAL;
     }
 
     @Override
     public Object visitAssignExpr(Expr.Assign expr) {
         Object value = evaluate(expr.value);
         
-        Integer distance = locals.get(expr);
-        if (distance != null) {
-            environment.assignAt(distance, expr.name, value);
+        if (expr.index >= 0) {
+            int index = base + expr.index;
+            if (stack[index] instanceof Cell) {
+                ((Cell)stack[index]).value = value;
+            } else {
+                stack[index] = value;
+            }
+        } else if (expr.upvalue >= 0) {
+            upvalues[expr.upvalue].value = value;
         } else {
-            globals.assign(expr.name, value);
+            scriptGlobals[expr.global].assign(expr.name, value);
         }
 
         return value;
     }
 
+    // The value helpers below are shared with the bytecode VM
+
     // False and nil are falsey, everything else is truthy
-    private boolean isTruthy(Object object) {
+    static boolean isTruthy(Object object) {
         if (object == null) return false;
         if (object instanceof Boolean) return (boolean)object;
 
@@ -313,14 +842,46 @@ class Interpreter implements Expr.Visitor<Object>,
 
     // Compares two operands of any type
     // This allows for checks like 3 == "three"
-    private boolean isEqual(Object a, Object b) {
+    static boolean isEqual(Object a, Object b) {
         if (a == null && b == null) return true;
         if (a == null) return false;
 
+        // A string built by + equals a literal with the same characters
+        if (a instanceof LazyString || b instanceof LazyString) {
+            return a instanceof CharSequence && b instanceof CharSequence &&
+                   a.toString().equals(b.toString());
+        }
+
         return a.equals(b);
     }
 
-    private String stringify(Object object) {
+    // A map reads a missing key as nil
+    static Object getIndex(Object object, Object index, Token bracket) {
+        if (object instanceof CynchMap) {
+            return ((CynchMap)object).get(CynchMap.checkKey(index, bracket));
+        }
+
+        CynchArray array = checkIndexed(object, bracket);
+        return array.get(array.checkIndex(index, bracket));
+    }
+
+    static void setIndex(Object object, Object index, Object value, Token bracket) {
+        if (object instanceof CynchMap) {
+            ((CynchMap)object).put(CynchMap.checkKey(index, bracket), value);
+            return;
+        }
+
+        CynchArray array = checkIndexed(object, bracket);
+        array.set(array.checkIndex(index, bracket), value);
+    }
+
+    static CynchArray checkIndexed(Object object, Token bracket) {
+        if (object instanceof CynchArray) return (CynchArray)object;
+
+        throw new RuntimeError(bracket, "Can only index arrays and maps.");
+    }
+
+    static String stringify(Object object) {
         if (object == null) return "nil";
 
         if (object instanceof Double) {
@@ -0,0 +1,100 @@
+package main.java;
+
+// The result of a + that builds a long string
+// Appending to a string copies nothing but what is appended: the string
+// shares a StringBuilder with the one it extends and only owns a prefix of
+// it. The first string to append to a builder appends in place; any other
+// string that shares it copies its prefix into a new builder first. A
+// prefix never changes once written, so every string keeps its value.
+// The characters are made into a String only when it is printed, compared
+// or hashed, and that String is kept.
+final class LazyString implements CharSequence {
+    // Shorter results are plain Strings, which are cheaper to make and compare
+    private static final int MIN_LENGTH = 64;
+
+    private final StringBuilder builder;
+    private final int length;
+    private String flat = null;
+
+    private LazyString(StringBuilder builder, int length) {
+        this.builder = builder;
+        this.length = length;
+    }
+
+    // Concatenates the operands of +, each a string or a number
+    static CharSequence concat(Object left, Object right) {
+        CharSequence head = text(left);
+        CharSequence tail = text(right);
+
+        if (head instanceof LazyString) return ((LazyString)head).append(tail);
+
+        int length = head.length() + tail.length();
+        if (length < MIN_LENGTH) return head.toString() + tail.toString();
+
+        StringBuilder builder = new StringBuilder(Math.max(length * 2, 2 * MIN_LENGTH));
+        builder.append(head.toString()).append(tail.toString());
+        return new LazyString(builder, length);
+    }
+
+    private static CharSequence text(Object value) {
+        if (value instanceof CharSequence) return (CharSequence)value;
+        return Interpreter.stringify(value);
+    }
+
+    // Spawned calls can append to the same string, so the builder is locked
+    // The tail is flattened first, which never takes a second lock
+    private LazyString append(CharSequence tail) {
+        String text = tail.toString();
+
+        synchronized (builder) {
+            if (builder.length() == length) {
+                builder.append(text);
+                return new LazyString(builder, builder.length());
+            }
+
+            StringBuilder copy = new StringBuilder(Math.max((length + text.length()) * 2, 2 * MIN_LENGTH));
+            copy.append(builder, 0, length).append(text);
+            return new LazyString(copy, copy.length());
+        }
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return toString().charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        String text = flat;
+        if (text == null) {
+            synchronized (builder) {
+                text = builder.substring(0, length);
+            }
+            flat = text;
+        }
+
+        return text;
+    }
+
+    // Equal only to other LazyStrings, so that equals() stays symmetric
+    // Interpreter.isEqual() compares them with Strings
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof LazyString && toString().equals(other.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+}
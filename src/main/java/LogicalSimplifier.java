@@ -0,0 +1,19 @@
+package main.java;
+
+// Short-circuits 'and' and 'or' whose left operand is a literal
+// The result is then either that literal or the right operand
+class LogicalSimplifier extends AstRewriter {
+    @Override
+    public Expr visitLogicalExpr(Expr.Logical expr) {
+        expr = (Expr.Logical)super.visitLogicalExpr(expr);
+        if (!(expr.left instanceof Expr.Literal)) return expr;
+
+        boolean truthy = Interpreter.isTruthy(((Expr.Literal)expr.left).value);
+
+        if (expr.operator.type == TokenType.OR) {
+            return truthy ? expr.left : expr.right;
+        }
+
+        return truthy ? expr.right : expr.left;
+    }
+}
@@ -0,0 +1,95 @@
+package main.java;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Remembers the results of a pure function, keyed by its arguments
+// Once full, the least recently used result is evicted
+// Spawned calls share the cache, so it is locked while it is used, which is
+// only for the lookup and the store and never during the call itself
+// A later script can redefine the globals the function uses, so the cache
+// remembers what they held and forgets every result once one of them changes
+class MemoCache {
+    // Returned by get() when there is no result, since nil is a valid one
+    static final Object MISS = new Object();
+
+    // How many results a cache keeps unless told otherwise
+    static final int DEFAULT_CAPACITY = 10000;
+
+    final String name;
+    private final Map<List<Object>, Object> results;
+
+    // The globals the function reads or calls, and what they held for the results
+    private final Environment.Global[] dependencies;
+    private final Object[] values;
+
+    long hits = 0;
+    long misses = 0;
+    long evictions = 0;
+    long invalidations = 0;
+
+    MemoCache(String name, int capacity, Environment.Global[] dependencies) {
+        this.name = name;
+        this.dependencies = dependencies;
+        this.values = new Object[dependencies.length];
+
+        // An access-ordered map keeps the least recently used entry first
+        this.results = new LinkedHashMap<List<Object>, Object>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, Object> eldest) {
+                if (size() <= capacity) return false;
+
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    synchronized Object get(List<Object> arguments) {
+        if (changed()) results.clear();
+
+        Object result = results.getOrDefault(arguments, MISS);
+
+        if (result == MISS) {
+            misses++;
+        } else {
+            hits++;
+        }
+
+        return result;
+    }
+
+    // The arguments become the key, so they must not change afterwards
+    // A result is not kept if a global changed while it was computed
+    synchronized void put(List<Object> arguments, Object result) {
+        if (changed()) {
+            results.clear();
+            return;
+        }
+
+        results.put(arguments, result);
+    }
+
+    // Takes note of what the globals hold now and returns whether any of it is new
+    // They hold functions, so they are compared by identity
+    private boolean changed() {
+        boolean changed = false;
+        for (int i = 0; i < dependencies.length; i++) {
+            Object value = dependencies[i].value;
+            if (value != values[i]) {
+                values[i] = value;
+                changed = true;
+            }
+        }
+
+        if (changed && !results.isEmpty()) invalidations++;
+        return changed;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return name + ": " + hits + " hits, " + misses + " misses, " +
+            evictions + " evictions, " + invalidations + " invalidations";
+    }
+}
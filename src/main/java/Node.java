@@ -0,0 +1,49 @@
+package main.java;
+
+// Base class of the executable node tree used by the NodeInterpreter
+// Nodes can replace themselves with more specialized versions while running,
+// so every node knows its parent
+// Spawned calls run the same tree on several threads, so replacing is locked
+// and only the first thread to replace a node does. The others run their
+// replacement once, detached from the tree.
+abstract class Node {
+    private static final Object REPLACE_LOCK = new Object();
+
+    Node parent;
+
+    // The node that took this one's place, if any
+    private Node replacement;
+
+    // Swaps this node for another one in the parent's tree and returns it
+    <T extends Node> T replace(T newNode) {
+        synchronized (REPLACE_LOCK) {
+            if (replacement != null) {
+                // The lost replacement took the children, give them back
+                Node current = replacement;
+                while (current.replacement != null) current = current.replacement;
+                current.adoptChildren();
+                return newNode;
+            }
+
+            replacement = newNode;
+            newNode.parent = parent;
+            parent.replaceChild(this, newNode);
+            return newNode;
+        }
+    }
+
+    // Makes the children's parent this node again
+    // Overridden by every node whose replacement reuses its children
+    void adoptChildren() {
+    }
+
+    // Overridden by every node that holds expression children
+    void replaceChild(Node oldChild, Node newChild) {
+        throw new IllegalStateException(getClass().getSimpleName() + " has no replaceable children.");
+    }
+
+    <T extends Node> T adopt(T child) {
+        if (child != null) child.parent = this;
+        return child;
+    }
+}
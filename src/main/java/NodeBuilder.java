@@ -0,0 +1,243 @@
+package main.java;
+
+import java.util.List;
+
+// Builds the executable node tree for resolved statements
+class NodeBuilder implements Expr.Visitor<ExprNode>, Stmt.Visitor<StmtNode> {
+    private final Environment globals;
+    private final Output output;
+    private final MemoCache[] memoCaches;
+
+    NodeBuilder(Environment globals, Output output, MemoCache[] memoCaches) {
+        this.globals = globals;
+        this.output = output;
+        this.memoCaches = memoCaches;
+    }
+
+    StmtNode build(List<Stmt> statements) {
+        return new StmtNode.Sequence(build(statements.toArray(new Stmt[0])));
+    }
+
+    @Override
+    public StmtNode visitBlockStmt(Stmt.Block stmt) {
+        StmtNode[] statements = build(stmt.statements.toArray(new Stmt[0]));
+
+        // A block that declares nothing runs in the enclosing frame
+        if (stmt.frameSize == 0) return new StmtNode.Sequence(statements);
+
+        return new StmtNode.Block(stmt.frameSize, statements);
+    }
+
+    @Override
+    public StmtNode visitBreakStmt(Stmt.Break stmt) {
+        return new StmtNode.Break();
+    }
+
+    @Override
+    public StmtNode visitExpressionStmt(Stmt.Expression stmt) {
+        return new StmtNode.Expression(build(stmt.expression));
+    }
+
+    @Override
+    public StmtNode visitForStmt(Stmt.For stmt) {
+        StmtNode initializer = null;
+        if (stmt.initializer != null) initializer = build(stmt.initializer);
+
+        ExprNode increment = null;
+        if (stmt.increment != null) increment = build(stmt.increment);
+
+        return new StmtNode.For(stmt.frameSize, initializer, build(stmt.condition),
+                                increment, build(stmt.body));
+    }
+
+    @Override
+    public StmtNode visitFunctionStmt(Stmt.Function stmt) {
+        StmtNode body = new StmtNode.Sequence(build(stmt.body.toArray(new Stmt[0])));
+        return new StmtNode.Function(stmt.name.lexeme, stmt.params.size(), stmt.frameSize,
+                                     memoCache(stmt), body,
+                                     define(stmt.name, stmt.slot));
+    }
+
+    private MemoCache memoCache(Stmt.Function stmt) {
+        return stmt.memoIndex < 0 ? null : memoCaches[stmt.memoIndex];
+    }
+
+    @Override
+    public StmtNode visitIfStmt(Stmt.If stmt) {
+        StmtNode elseBranch = null;
+        if (stmt.elseBranch != null) elseBranch = build(stmt.elseBranch);
+
+        return new StmtNode.If(build(stmt.condition), build(stmt.thenBranch), elseBranch);
+    }
+
+    @Override
+    public StmtNode visitPrintStmt(Stmt.Print stmt) {
+        return new StmtNode.Print(output, build(stmt.expression));
+    }
+
+    @Override
+    public StmtNode visitReturnStmt(Stmt.Return stmt) {
+        if (stmt.tailCall) {
+            return new StmtNode.TailReturn((ExprNode.Call)build(stmt.value));
+        }
+
+        ExprNode value = null;
+        if (stmt.value != null) value = build(stmt.value);
+
+        return new StmtNode.Return(value);
+    }
+
+    @Override
+    public StmtNode visitVarStmt(Stmt.Var stmt) {
+        ExprNode initializer = null;
+        if (stmt.initializer != null) initializer = build(stmt.initializer);
+
+        return new StmtNode.Var(initializer, define(stmt.name, stmt.slot));
+    }
+
+    @Override
+    public StmtNode visitWhileStmt(Stmt.While stmt) {
+        return new StmtNode.While(build(stmt.condition), build(stmt.body));
+    }
+
+    @Override
+    public ExprNode visitArrayExpr(Expr.Array expr) {
+        ExprNode[] elements = new ExprNode[expr.elements.size()];
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = build(expr.elements.get(i));
+        }
+
+        return new ExprNode.Array(elements);
+    }
+
+    @Override
+    public ExprNode visitAssignExpr(Expr.Assign expr) {
+        if (expr.depth >= 0) {
+            return new ExprNode.LocalAssign(expr.depth, expr.slot, build(expr.value));
+        }
+
+        return new ExprNode.GlobalAssign(globals.global(expr.name.lexeme), expr.name,
+                                       build(expr.value));
+    }
+
+    @Override
+    public ExprNode visitBinaryExpr(Expr.Binary expr) {
+        ExprNode left = build(expr.left);
+        ExprNode right = build(expr.right);
+
+        // Equality works on any type, so there is nothing to specialize on
+        if (expr.operator.type == TokenType.EQUAL_EQUAL ||
+            expr.operator.type == TokenType.BANG_EQUAL) {
+            return new ExprNode.Generic(left, expr.operator, right);
+        }
+
+        return new ExprNode.Uninitialized(left, expr.operator, right);
+    }
+
+    @Override
+    public ExprNode visitCallExpr(Expr.Call expr) {
+        ExprNode[] arguments = new ExprNode[expr.arguments.size()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = build(expr.arguments.get(i));
+        }
+
+        return new ExprNode.Call(build(expr.callee), expr.paren, arguments);
+    }
+
+    @Override
+    public ExprNode visitSpawnExpr(Expr.Spawn expr) {
+        return new ExprNode.Spawn((ExprNode.Call)visitCallExpr(expr.call));
+    }
+
+    @Override
+    public ExprNode visitAwaitExpr(Expr.Await expr) {
+        return new ExprNode.Await(expr.keyword, build(expr.value));
+    }
+
+    @Override
+    public ExprNode visitGroupingExpr(Expr.Grouping expr) {
+        return build(expr.expression);
+    }
+
+    @Override
+    public ExprNode visitIndexExpr(Expr.Index expr) {
+        return new ExprNode.Index(build(expr.object), expr.bracket, build(expr.index));
+    }
+
+    @Override
+    public ExprNode visitLiteralExpr(Expr.Literal expr) {
+        if (expr.value instanceof Double) {
+            return new ExprNode.LiteralDouble((double)expr.value);
+        }
+
+        return new ExprNode.Literal(expr.value);
+    }
+
+    @Override
+    public ExprNode visitLogicalExpr(Expr.Logical expr) {
+        if (expr.operator.type == TokenType.OR) {
+            return new ExprNode.Or(build(expr.left), build(expr.right));
+        }
+
+        return new ExprNode.And(build(expr.left), build(expr.right));
+    }
+
+    @Override
+    public ExprNode visitMapExpr(Expr.Map expr) {
+        ExprNode[] keys = new ExprNode[expr.keys.size()];
+        ExprNode[] values = new ExprNode[expr.values.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = build(expr.keys.get(i));
+            values[i] = build(expr.values.get(i));
+        }
+
+        return new ExprNode.Map(expr.brace, keys, values);
+    }
+
+    @Override
+    public ExprNode visitSetIndexExpr(Expr.SetIndex expr) {
+        return new ExprNode.SetIndex(build(expr.object), expr.bracket,
+                                     build(expr.index), build(expr.value));
+    }
+
+    @Override
+    public ExprNode visitUnaryExpr(Expr.Unary expr) {
+        if (expr.operator.type == TokenType.BANG) {
+            return new ExprNode.Not(build(expr.right));
+        }
+
+        return new ExprNode.Negate(expr.operator, build(expr.right));
+    }
+
+    @Override
+    public ExprNode visitVariableExpr(Expr.Variable expr) {
+        if (expr.depth == 0) return new ExprNode.FrameRead(expr.slot);
+        if (expr.depth > 0) return new ExprNode.LocalRead(expr.depth, expr.slot);
+
+        return new ExprNode.GlobalRead(globals.global(expr.name.lexeme), expr.name);
+    }
+
+    // Globals are found once, here, and then read and assigned directly
+    private StmtNode.Define define(Token name, int slot) {
+        if (slot >= 0) return new StmtNode.Define(null, slot);
+
+        return new StmtNode.Define(globals.global(name.lexeme), slot);
+    }
+
+    private StmtNode[] build(Stmt[] statements) {
+        StmtNode[] nodes = new StmtNode[statements.length];
+        for (int i = 0; i < statements.length; i++) {
+            nodes[i] = build(statements[i]);
+        }
+
+        return nodes;
+    }
+
+    private StmtNode build(Stmt stmt) {
+        return stmt.accept(this);
+    }
+
+    private ExprNode build(Expr expr) {
+        return expr.accept(this);
+    }
+}
@@ -0,0 +1,63 @@
+package main.java;
+
+import java.util.Arrays;
+import java.util.List;
+
+// A function value created by the NodeInterpreter
+// Every closure of a declaration shares its node tree, and with it the
+// specializations the tree has made so far
+class NodeFunction {
+    private final StmtNode.Function declaration;
+    private final Environment closure;
+
+    NodeFunction(StmtNode.Function declaration, Environment closure) {
+        this.declaration = declaration;
+        this.closure = closure;
+    }
+
+    int arity() {
+        return declaration.arity;
+    }
+
+    @Override
+    public String toString() {
+        return "<fn " + declaration.name + ">";
+    }
+
+    Object call(Object[] arguments) {
+        MemoCache cache = declaration.cache;
+        if (cache == null) return invoke(arguments);
+
+        List<Object> key = Arrays.asList(arguments);
+        Object result = cache.get(key);
+        if (result == MemoCache.MISS) {
+            result = invoke(arguments);
+            cache.put(key, result);
+        }
+
+        return result;
+    }
+
+    // Tail calls replace the current call instead of nesting inside it,
+    // so only this call's result is memoized
+    private Object invoke(Object[] arguments) {
+        NodeFunction function = this;
+
+        for (;;) {
+            // Parameters occupy the first slots of the frame
+            Environment environment =
+                new Environment(function.closure, function.declaration.frameSize);
+            System.arraycopy(arguments, 0, environment.slots, 0, arguments.length);
+
+            try {
+                function.declaration.body.execute(environment);
+                return null;
+            } catch (Return returnValue) {
+                return returnValue.value;
+            } catch (TailCallException tailCall) {
+                function = tailCall.function;
+                arguments = tailCall.arguments;
+            }
+        }
+    }
+}
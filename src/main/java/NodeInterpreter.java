@@ -0,0 +1,26 @@
+package main.java;
+
+import java.util.List;
+
+// Runs scripts by turning them into self-specializing node trees
+class NodeInterpreter {
+    final Environment globals = new Environment();
+    private final Output output;
+    private final Reporter reporter;
+
+    NodeInterpreter(Output output, Reporter reporter) {
+        this.output = output;
+        this.reporter = reporter;
+        Interpreter.defineNatives(globals, output);
+    }
+
+    void interpret(List<Stmt> statements, MemoCache[] memoCaches) {
+        StmtNode script = new NodeBuilder(globals, output, memoCaches).build(statements);
+
+        try {
+            script.execute(globals);
+        } catch (RuntimeError error) {
+            reporter.runtimeError(error);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package main.java;
+
+// Instructions understood by the VM
+// Operands follow the opcode in the chunk as unsigned 16-bit values
+final class OpCode {
+    private OpCode() {}
+
+    static final byte CONSTANT      = 0;    // [constant]
+    static final byte NIL           = 1;
+    static final byte TRUE          = 2;
+    static final byte FALSE         = 3;
+    static final byte POP           = 4;
+
+    static final byte GET_LOCAL     = 5;    // [depth] [slot]
+    static final byte SET_LOCAL     = 6;    // [depth] [slot]
+    static final byte DEFINE_LOCAL  = 7;    // [slot]
+    static final byte GET_GLOBAL    = 8;    // [Global constant]
+    static final byte SET_GLOBAL    = 9;    // [Global constant]
+    static final byte DEFINE_GLOBAL = 10;   // [Global constant]
+
+    static final byte EQUAL         = 11;
+    static final byte NOT_EQUAL     = 12;
+    static final byte GREATER       = 13;
+    static final byte GREATER_EQUAL = 14;
+    static final byte LESS          = 15;
+    static final byte LESS_EQUAL    = 16;
+    static final byte ADD           = 17;
+    static final byte SUBTRACT      = 18;
+    static final byte MULTIPLY      = 19;
+    static final byte DIVIDE        = 20;
+    static final byte NOT           = 21;
+    static final byte NEGATE        = 22;
+
+    static final byte PRINT         = 23;
+    static final byte JUMP          = 24;   // [forward offset]
+    static final byte JUMP_IF_FALSE = 25;   // [forward offset], leaves the condition
+    static final byte LOOP          = 26;   // [backward offset]
+    static final byte CALL          = 27;   // [argument count]
+    static final byte CLOSURE       = 28;   // [function constant]
+    static final byte RETURN        = 29;
+
+    static final byte PUSH_SCOPE    = 30;   // [frame size]
+    static final byte POP_SCOPE     = 31;
+
+    // Like CALL, but a Cynch callee takes over the caller's frame
+    // Always followed by a RETURN, which passes on the result of a native
+    static final byte TAIL_CALL     = 32;   // [argument count]
+
+    // Like CALL, but the call runs on another thread and a future is pushed
+    static final byte SPAWN         = 33;   // [argument count]
+    static final byte AWAIT         = 34;
+
+    static final byte ARRAY         = 35;   // [element count]
+    static final byte GET_INDEX     = 36;
+    static final byte SET_INDEX     = 37;   // leaves the value
+    static final byte MAP           = 38;   // [entry count], keys and values alternate
+}
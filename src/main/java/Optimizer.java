@@ -0,0 +1,55 @@
+package main.java;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+// Rewrites resolved statements with a sequence of passes
+// The passes feed each other, e.g. folding '1 < 2' lets an 'if' be pruned,
+// so they are repeated until the tree stops shrinking
+class Optimizer {
+    private static final int MAX_ROUNDS = 8;
+
+    private final List<Supplier<AstRewriter>> passes;
+
+    // How many nodes the last call to optimize() removed
+    int removed = 0;
+
+    Optimizer(List<Supplier<AstRewriter>> passes) {
+        this.passes = passes;
+    }
+
+    // The passes that are run by default
+    static Optimizer standard() {
+        return new Optimizer(Arrays.asList(
+            ConstantFolder::new,
+            LogicalSimplifier::new,
+            DeadBranchEliminator::new
+        ));
+    }
+
+    List<Stmt> optimize(List<Stmt> statements) {
+        int before = size(statements);
+        int size = before;
+
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            for (Supplier<AstRewriter> pass : passes) {
+                statements = pass.get().rewrite(statements);
+            }
+
+            int after = size(statements);
+            if (after == size) break;
+            size = after;
+        }
+
+        removed = before - size;
+        return statements;
+    }
+
+    // A pass that changes nothing still counts the nodes it visits
+    private static int size(List<Stmt> statements) {
+        AstRewriter counter = new AstRewriter() {};
+        counter.rewrite(statements);
+        return counter.nodes;
+    }
+}
@@ -0,0 +1,32 @@
+package main.java;
+
+import java.io.BufferedWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+// Where everything a script prints goes, for every engine
+// Lines are collected in a large buffer instead of being flushed one by one,
+// which is written out when it fills up, before the prompt, before a runtime
+// error is reported and once a script has run
+class Output {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final PrintWriter out;
+
+    // Unbuffered output flushes every line as soon as it is printed
+    Output(Writer writer, boolean buffered) {
+        if (buffered) {
+            this.out = new PrintWriter(new BufferedWriter(writer, BUFFER_SIZE));
+        } else {
+            this.out = new PrintWriter(writer, true);
+        }
+    }
+
+    void println(String line) {
+        out.println(line);
+    }
+
+    void flush() {
+        out.flush();
+    }
+}
@@ -2,7 +2,6 @@ package main.java;
 
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Arrays;
 
 import static main.java.TokenType.*;
 
@@ -22,12 +21,23 @@ class Parser {
     // A ParseError is thrown when the parser will be synchronized
     private static class ParseError extends RuntimeException {}
 
-    private final List<Token> tokens;
-    private int current = 0;
+    // Only the current token and the one before it are kept, so the tokens
+    // of a script are never all in memory at once
+    private final TokenStream tokens;
+    private final Reporter reporter;
+    private Token current;
+    private Token previous = null;
     private int loopDepth = 0;
 
-    Parser(List<Token> tokens) {
+    Parser(TokenStream tokens, Reporter reporter) {
         this.tokens = tokens;
+        this.reporter = reporter;
+        this.current = tokens.nextToken();
+    }
+
+    // Parses tokens that were scanned beforehand
+    Parser(List<Token> tokens, Reporter reporter) {
+        this(tokens.iterator()::next, reporter);
     }
 
     private Expr expression() {
@@ -39,7 +49,12 @@ class Parser {
     // Synchronizes the parser if there is an error
     private Stmt declaration() {
         try {
-            if (match(FUN)) return function("function");
+            if (match(FUN)) return function("function", null);
+            if (match(MEMO)) {
+                Token memo = previous();
+                consume(FUN, "Expect 'fun' after 'memo'.");
+                return function("function", memo);
+            }
             if (match(VAR)) return varDeclaration();
             return statement();
         } catch (ParseError error) {
@@ -68,7 +83,6 @@ class Parser {
         return new Stmt.Break();
     }
 
-    // This can be built using already defined control statements
     private Stmt forStatement() {
         consume(LEFT_PAREN, "Expect '(' after 'for'.");
 
@@ -98,25 +112,11 @@ class Parser {
             loopDepth++;
             Stmt body = statement();
 
-            if (increment != null) {
-                body = new Stmt.Block(
-                    Arrays.asList(body, new Stmt.Expression(increment))
-                );
-            }
-
             if (condition == null) condition = new Expr.Literal(true);
-            body = new Stmt.While(condition, body);
-
-            if (initializer != null) {
-                body = new Stmt.Block(Arrays.asList(initializer, body));
-            }
-
-            return body;
+            return new Stmt.For(initializer, condition, increment, body);
         } finally {
             loopDepth--;
         }
-
-        
     }
 
     private Stmt ifStatement() {
@@ -187,7 +187,8 @@ class Parser {
         return new Stmt.Expression(expr);
     }
 
-    private Stmt.Function function(String kind) {
+    // 'memo' is the keyword of a memoized function, or null for a plain one
+    private Stmt.Function function(String kind, Token memo) {
         Token name = consume(IDENTIFIER, "Expect " + kind + " name.");
         consume(LEFT_PAREN, "Expect '(' after " + kind + " name.");
         List<Token> parameters = new ArrayList<>();
@@ -204,7 +205,7 @@ class Parser {
 
         consume(LEFT_BRACE, "Expect '{' before " + kind + " body.");
         List<Stmt> body = block();
-        return new Stmt.Function(name, parameters, body);
+        return new Stmt.Function(name, parameters, body, memo);
     }
 
     private List<Stmt> block() {
@@ -230,6 +231,11 @@ class Parser {
                 return new Expr.Assign(name, value);
             }
 
+            if (expr instanceof Expr.Index) {
+                Expr.Index index = (Expr.Index)expr;
+                return new Expr.SetIndex(index.object, index.bracket, index.index, value);
+            }
+
             error(equals, "Invalid assignment target.");
         }
 
@@ -334,6 +340,20 @@ class Parser {
             return new Expr.Unary(operator, right);
         }
 
+        if (match(AWAIT)) {
+            Token keyword = previous();
+            return new Expr.Await(keyword, unary());
+        }
+
+        // Only a call can be spawned, its callee and arguments are evaluated
+        // before it is handed to another thread
+        if (match(SPAWN)) {
+            Token keyword = previous();
+            Expr call = call();
+            if (!(call instanceof Expr.Call)) throw error(keyword, "Expect a call after 'spawn'.");
+            return new Expr.Spawn(keyword, (Expr.Call)call);
+        }
+
         return call();
     }
 
@@ -343,6 +363,10 @@ class Parser {
         while (true) {
             if (match(LEFT_PAREN)) {
                 expr = finishCall(expr);
+            } else if (match(LEFT_BRACKET)) {
+                Expr index = expression();
+                Token bracket = consume(RIGHT_BRACKET, "Expect ']' after index.");
+                expr = new Expr.Index(expr, bracket, index);
             } else {
                 break;
             }
@@ -367,7 +391,9 @@ class Parser {
         return new Expr.Call(callee, paren, arguments);
     }
 
-    // primary --> NUMBER | STRING | "true" | "false" | "nil" | "(" expression ")" ;
+    // primary --> NUMBER | STRING | "true" | "false" | "nil" | "(" expression ")"
+    //           | "[" ( expression ( "," expression )* )? "]"
+    //           | "{" ( expression ":" expression ( "," expression ":" expression )* )? "}" ;
     // Most cases here are single terminals
     // Highest precedence
     private Expr primary() {
@@ -385,6 +411,11 @@ class Parser {
             return new Expr.Variable(previous());
         }
 
+        // Outside of a print statement, 'print' is the native function
+        if (match(PRINT)) {
+            return new Expr.Variable(previous());
+        }
+
         // Everything beteween the parentheses needs to be grouped
         if (match(LEFT_PAREN)) {
             // Parses the expression and then looks for the closing parenthesis
@@ -393,6 +424,36 @@ class Parser {
             return new Expr.Grouping(expr);
         }
 
+        // An array literal lists its elements between brackets
+        if (match(LEFT_BRACKET)) {
+            List<Expr> elements = new ArrayList<>();
+            if (!check(RIGHT_BRACKET)) {
+                do {
+                    elements.add(expression());
+                } while (match(COMMA));
+            }
+
+            Token bracket = consume(RIGHT_BRACKET, "Expect ']' after array elements.");
+            return new Expr.Array(bracket, elements);
+        }
+
+        // A map literal pairs keys with values between braces
+        // A brace that starts a statement opens a block instead
+        if (match(LEFT_BRACE)) {
+            List<Expr> keys = new ArrayList<>();
+            List<Expr> values = new ArrayList<>();
+            if (!check(RIGHT_BRACE)) {
+                do {
+                    keys.add(expression());
+                    consume(COLON, "Expect ':' after map key.");
+                    values.add(expression());
+                } while (match(COMMA));
+            }
+
+            Token brace = consume(RIGHT_BRACE, "Expect '}' after map entries.");
+            return new Expr.Map(brace, keys, values);
+        }
+
         // If the token doesn't match any of these types, it can't start an expression
         throw error(peek(), "Expect expression.");
     }
@@ -428,7 +489,10 @@ class Parser {
 
     // Consumes the current token and returns it
     private Token advance() {
-        if (!isAtEnd()) current++;
+        if (!isAtEnd()) {
+            previous = current;
+            current = tokens.nextToken();
+        }
         return previous();
     }
 
@@ -437,17 +501,17 @@ class Parser {
     }
 
     private Token peek() {
-        return tokens.get(current);
+        return current;
     }
 
     private Token previous() {
-        return tokens.get(current - 1);
+        return previous;
     }
 
     // Returns the error rather than throwing it
     // This lets the calling method decide whether or not to unwind the parser
     private ParseError error(Token token, String message) {
-        Cynch.error(token, message);
+        reporter.error(token, message);
         return new ParseError();
     }
 
@@ -465,6 +529,7 @@ class Parser {
             switch (peek().type) {
                 case CLASS:
                 case FUN:
+                case MEMO:
                 case VAR:
                 case FOR:
                 case IF:
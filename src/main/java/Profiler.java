@@ -0,0 +1,285 @@
+package main.java;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counts the calls and statements a ProfilingInterpreter runs and times calls
+// Every thread keeps a stack of the calls it is in. A call's inclusive time
+// runs from entering it to leaving it, its self time leaves out the calls it
+// makes. Recursive calls add their inclusive time only once, for the
+// outermost of them, so that it never exceeds the time the program ran.
+// With 'stacks', the self time of every distinct call stack is kept too, for
+// writing out collapsed stacks that flame graph tools read.
+class Profiler {
+    private final boolean stacks;
+
+    // Cynch functions are kept by declaration, natives by the name they are
+    // called by, since they all share one toString()
+    private final Map<Object, Function> functions = new ConcurrentHashMap<>();
+    private final Map<Stmt, LongAdder> statements = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> stackTimes = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<CallStack> callStacks = ThreadLocal.withInitial(CallStack::new);
+
+    private static class Function {
+        final String name;
+        long calls = 0;
+        long inclusive = 0;
+        long self = 0;
+
+        Function(String name) {
+            this.name = name;
+        }
+    }
+
+    private static class Call {
+        final Function function;
+        final boolean outermost;
+        final long start;
+        long children = 0;
+
+        Call(Function function, boolean outermost) {
+            this.function = function;
+            this.outermost = outermost;
+            this.start = System.nanoTime();
+        }
+    }
+
+    private static class CallStack {
+        final List<Call> calls = new ArrayList<>();
+        final Map<Function, Integer> depths = new HashMap<>();
+    }
+
+    Profiler(boolean stacks) {
+        this.stacks = stacks;
+    }
+
+    void enter(CynchCallable callable, Expr.Call call) {
+        Function function = function(callable, call);
+        CallStack stack = callStacks.get();
+
+        boolean outermost = stack.depths.merge(function, 1, Integer::sum) == 1;
+        stack.calls.add(new Call(function, outermost));
+    }
+
+    void exit() {
+        long end = System.nanoTime();
+        CallStack stack = callStacks.get();
+        String path = stacks ? path(stack) : null;
+
+        Call call = stack.calls.remove(stack.calls.size() - 1);
+        long inclusive = end - call.start;
+        long self = inclusive - call.children;
+
+        if (!stack.calls.isEmpty()) stack.calls.get(stack.calls.size() - 1).children += inclusive;
+        stack.depths.merge(call.function, -1, Integer::sum);
+
+        Function function = call.function;
+        synchronized (function) {
+            function.calls++;
+            function.self += self;
+            if (call.outermost) function.inclusive += inclusive;
+        }
+
+        if (path != null) stackTimes.computeIfAbsent(path, key -> new LongAdder()).add(self);
+    }
+
+    void count(Stmt stmt) {
+        statements.computeIfAbsent(stmt, key -> new LongAdder()).increment();
+    }
+
+    private Function function(CynchCallable callable, Expr.Call call) {
+        if (callable instanceof CynchFunction) {
+            Token name = ((CynchFunction)callable).declaration.name;
+            return functions.computeIfAbsent(((CynchFunction)callable).declaration,
+                key -> new Function(name.lexeme + ":" + name.line));
+        }
+
+        String name = call.callee instanceof Expr.Variable ?
+            ((Expr.Variable)call.callee).name.lexeme : callable.toString();
+        return functions.computeIfAbsent(name, key -> new Function(name));
+    }
+
+    private static String path(CallStack stack) {
+        StringBuilder path = new StringBuilder();
+        for (Call call : stack.calls) {
+            if (path.length() > 0) path.append(';');
+            path.append(call.function.name);
+        }
+
+        return path.toString();
+    }
+
+    // Functions by self time and lines by the statements run on them
+    void report(PrintStream out) {
+        List<Function> byTime = new ArrayList<>(functions.values());
+        byTime.sort((a, b) -> Long.compare(b.self, a.self));
+
+        out.println(String.format("[profile] %10s %12s %12s  %s",
+                                  "calls", "total ms", "self ms", "function"));
+        for (Function function : byTime) {
+            out.println(String.format("[profile] %10d %12.3f %12.3f  %s", function.calls,
+                                      function.inclusive / 1e6, function.self / 1e6, function.name));
+        }
+
+        Map<Integer, Long> lines = new TreeMap<>();
+        for (Map.Entry<Stmt, LongAdder> entry : statements.entrySet()) {
+            int line = entry.getKey().accept(LINES);
+            if (line >= 0) lines.merge(line, entry.getValue().sum(), Long::sum);
+        }
+
+        List<Map.Entry<Integer, Long>> byCount = new ArrayList<>(lines.entrySet());
+        byCount.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+
+        out.println(String.format("[profile] %10s  %s", "statements", "line"));
+        for (Map.Entry<Integer, Long> entry : byCount) {
+            out.println(String.format("[profile] %10d  %d", entry.getValue(), entry.getKey()));
+        }
+    }
+
+    // One line per call stack, with its self time in microseconds
+    void writeStacks(Path file) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+            for (Map.Entry<String, LongAdder> entry : new TreeMap<>(stackTimes).entrySet()) {
+                long micros = entry.getValue().sum() / 1000;
+                if (micros > 0) out.println(entry.getKey() + " " + micros);
+            }
+        }
+    }
+
+    private static final Lines LINES = new Lines();
+
+    // Finds the line a statement starts on, or -1 if it has no token to tell
+    // Blocks count only through the statements in them
+    private static class Lines implements Stmt.Visitor<Integer>, Expr.Visitor<Integer> {
+        @Override
+        public Integer visitBlockStmt(Stmt.Block stmt) {
+            return -1;
+        }
+
+        @Override
+        public Integer visitBreakStmt(Stmt.Break stmt) {
+            return -1;
+        }
+
+        @Override
+        public Integer visitExpressionStmt(Stmt.Expression stmt) {
+            return stmt.expression.accept(this);
+        }
+
+        @Override
+        public Integer visitForStmt(Stmt.For stmt) {
+            return stmt.condition.accept(this);
+        }
+
+        @Override
+        public Integer visitIfStmt(Stmt.If stmt) {
+            return stmt.condition.accept(this);
+        }
+
+        @Override
+        public Integer visitFunctionStmt(Stmt.Function stmt) {
+            return stmt.name.line;
+        }
+
+        @Override
+        public Integer visitPrintStmt(Stmt.Print stmt) {
+            return stmt.expression.accept(this);
+        }
+
+        @Override
+        public Integer visitReturnStmt(Stmt.Return stmt) {
+            return stmt.keyword.line;
+        }
+
+        @Override
+        public Integer visitVarStmt(Stmt.Var stmt) {
+            return stmt.name.line;
+        }
+
+        @Override
+        public Integer visitWhileStmt(Stmt.While stmt) {
+            return stmt.condition.accept(this);
+        }
+
+        @Override
+        public Integer visitArrayExpr(Expr.Array expr) {
+            return expr.bracket.line;
+        }
+
+        @Override
+        public Integer visitAssignExpr(Expr.Assign expr) {
+            return expr.name.line;
+        }
+
+        @Override
+        public Integer visitAwaitExpr(Expr.Await expr) {
+            return expr.keyword.line;
+        }
+
+        @Override
+        public Integer visitBinaryExpr(Expr.Binary expr) {
+            return expr.operator.line;
+        }
+
+        @Override
+        public Integer visitCallExpr(Expr.Call expr) {
+            return expr.callee.accept(this);
+        }
+
+        @Override
+        public Integer visitGroupingExpr(Expr.Grouping expr) {
+            return expr.expression.accept(this);
+        }
+
+        @Override
+        public Integer visitIndexExpr(Expr.Index expr) {
+            return expr.bracket.line;
+        }
+
+        @Override
+        public Integer visitLiteralExpr(Expr.Literal expr) {
+            return -1;
+        }
+
+        @Override
+        public Integer visitLogicalExpr(Expr.Logical expr) {
+            return expr.operator.line;
+        }
+
+        @Override
+        public Integer visitMapExpr(Expr.Map expr) {
+            return expr.brace.line;
+        }
+
+        @Override
+        public Integer visitSetIndexExpr(Expr.SetIndex expr) {
+            return expr.bracket.line;
+        }
+
+        @Override
+        public Integer visitSpawnExpr(Expr.Spawn expr) {
+            return expr.keyword.line;
+        }
+
+        @Override
+        public Integer visitUnaryExpr(Expr.Unary expr) {
+            return expr.operator.line;
+        }
+
+        @Override
+        public Integer visitVariableExpr(Expr.Variable expr) {
+            return expr.name.line;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package main.java;
+
+import java.util.List;
+
+// A tree-walking interpreter that tells a Profiler about every call and
+// statement it runs
+// Only --profile makes one, so the hooks of a plain Interpreter stay empty
+// and cost nothing once the JIT has inlined them.
+final class ProfilingInterpreter extends Interpreter {
+    private final Profiler profiler;
+
+    ProfilingInterpreter(Output output, Reporter reporter, Profiler profiler) {
+        super(output, reporter);
+        this.profiler = profiler;
+    }
+
+    private ProfilingInterpreter(ProfilingInterpreter parent) {
+        super(parent);
+        this.profiler = parent.profiler;
+    }
+
+    @Override
+    Object invoke(CynchCallable function, List<Object> arguments, Expr.Call call) {
+        profiler.enter(function, call);
+        try {
+            return super.invoke(function, arguments, call);
+        } finally {
+            profiler.exit();
+        }
+    }
+
+    // The function called from tail position takes the place of the caller
+    @Override
+    void tailCalled(CynchFunction function) {
+        profiler.exit();
+        profiler.enter(function, null);
+    }
+
+    @Override
+    Interpreter spawned() {
+        return new ProfilingInterpreter(this);
+    }
+
+    @Override
+    Completion execute(Stmt stmt) {
+        profiler.count(stmt);
+        return super.execute(stmt);
+    }
+}
@@ -0,0 +1,373 @@
+package main.java;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Finds the functions whose result only depends on their arguments, so that
+// calling them again with the same arguments can return a remembered result
+// A pure function does not print, assign to anything but its own locals,
+// read the locals of an enclosing function, create closures, arrays or maps,
+// index them or call anything that is not pure. The only globals it may use
+// are functions that are declared once and never assigned to. No native is
+// pure: 'clock' changes and the others take arrays or maps, which can change
+// between calls with the same arguments.
+// Runs after the Resolver, which tells a function's own locals from captured ones
+// The program is analyzed as a whole, but a later prompt line or run can
+// still redefine the globals a memoized function uses, so they are listed
+// for its cache to watch
+class PurityAnalyzer implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    private final boolean automatic;
+    private final Reporter reporter;
+
+    private final List<Purity> functions = new ArrayList<>();
+    private final Map<String, Purity> globalFunctions = new HashMap<>();
+    private final Map<String, Integer> globalDeclarations = new HashMap<>();
+    private final Set<String> assignedGlobals = new HashSet<>();
+
+    // The globals each memoized function uses, by memo index
+    private final List<List<String>> dependencies = new ArrayList<>();
+
+    private Purity current = null;
+
+    // What a function does that could keep it from being pure
+    private static class Purity {
+        final Stmt.Function declaration;
+        String impurity = null;
+        final List<Token> reads = new ArrayList<>();
+        final List<Token> calls = new ArrayList<>();
+
+        Purity(Stmt.Function declaration) {
+            this.declaration = declaration;
+        }
+    }
+
+    // With 'automatic' every pure function is memoized, not only 'memo fun's
+    PurityAnalyzer(boolean automatic, Reporter reporter) {
+        this.automatic = automatic;
+        this.reporter = reporter;
+    }
+
+    // Numbers the memoized functions and returns their names by number
+    // Each run of the script gives every number a cache of its own
+    List<String> analyze(List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            analyze(statement);
+        }
+
+        // Calling an impure function makes the caller impure too
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Purity function : functions) {
+                if (function.impurity != null) continue;
+
+                function.impurity = impurity(function);
+                if (function.impurity != null) changed = true;
+            }
+        }
+
+        List<String> memoized = new ArrayList<>();
+        for (Purity function : functions) {
+            Stmt.Function declaration = function.declaration;
+
+            if (declaration.memo != null && function.impurity != null) {
+                reporter.error(declaration.memo, "Cannot memoize '" +
+                    declaration.name.lexeme + "' since it " + function.impurity + ".");
+            } else if (function.impurity == null && (declaration.memo != null || automatic)) {
+                declaration.memoIndex = memoized.size();
+                memoized.add(declaration.name.lexeme);
+                dependencies.add(dependencies(function));
+            }
+        }
+
+        return memoized;
+    }
+
+    // The globals a memoized function reads or calls, after analyze()
+    List<List<String>> dependencies() {
+        return dependencies;
+    }
+
+    // The globals a pure function uses itself or through the functions it calls
+    private List<String> dependencies(Purity function) {
+        Set<String> names = new LinkedHashSet<>();
+        List<Purity> pending = new ArrayList<>(List.of(function));
+
+        while (!pending.isEmpty()) {
+            Purity next = pending.remove(pending.size() - 1);
+            for (Token name : next.reads) {
+                names.add(name.lexeme);
+            }
+            for (Token name : next.calls) {
+                if (names.add(name.lexeme)) pending.add(globalFunctions.get(name.lexeme));
+            }
+        }
+
+        return new ArrayList<>(names);
+    }
+
+    // Checks the globals a function uses, once every declaration has been seen
+    private String impurity(Purity function) {
+        for (Token name : function.reads) {
+            if (!isConstant(name.lexeme)) {
+                return "reads '" + name.lexeme + "', which can change";
+            }
+        }
+
+        for (Token name : function.calls) {
+            if (!isConstant(name.lexeme)) {
+                return "calls '" + name.lexeme + "', which is not a pure function";
+            }
+
+            if (globalFunctions.get(name.lexeme).impurity != null) {
+                return "calls '" + name.lexeme + "', which " +
+                    globalFunctions.get(name.lexeme).impurity;
+            }
+        }
+
+        return null;
+    }
+
+    // A global function that is declared once and never assigned to
+    private boolean isConstant(String name) {
+        return globalFunctions.containsKey(name) &&
+               globalDeclarations.get(name) == 1 &&
+               !assignedGlobals.contains(name);
+    }
+
+    private void markImpure(String reason) {
+        if (current != null && current.impurity == null) {
+            current.impurity = reason;
+        }
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        for (Stmt statement : stmt.statements) {
+            analyze(statement);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitBreakStmt(Stmt.Break stmt) {
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        analyze(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitForStmt(Stmt.For stmt) {
+        if (stmt.initializer != null) analyze(stmt.initializer);
+        analyze(stmt.condition);
+        if (stmt.increment != null) analyze(stmt.increment);
+        analyze(stmt.body);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        markImpure("creates a closure");
+
+        Purity function = new Purity(stmt);
+        functions.add(function);
+
+        if (stmt.slot < 0) {
+            globalDeclarations.merge(stmt.name.lexeme, 1, Integer::sum);
+            globalFunctions.put(stmt.name.lexeme, function);
+        }
+
+        Purity enclosing = current;
+        current = function;
+
+        for (Stmt statement : stmt.body) {
+            analyze(statement);
+        }
+
+        current = enclosing;
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        analyze(stmt.condition);
+        analyze(stmt.thenBranch);
+        if (stmt.elseBranch != null) analyze(stmt.elseBranch);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        markImpure("prints");
+        analyze(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        if (stmt.value != null) analyze(stmt.value);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        if (stmt.slot < 0) {
+            globalDeclarations.merge(stmt.name.lexeme, 1, Integer::sum);
+        }
+
+        if (stmt.initializer != null) analyze(stmt.initializer);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        analyze(stmt.condition);
+        analyze(stmt.body);
+        return null;
+    }
+
+    // A remembered array or map would be shared by every caller
+    @Override
+    public Void visitArrayExpr(Expr.Array expr) {
+        markImpure("creates an array");
+        for (Expr element : expr.elements) {
+            analyze(element);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        analyze(expr.value);
+
+        if (expr.upvalue >= 0) {
+            markImpure("assigns to '" + expr.name.lexeme + "' of an enclosing function");
+        } else if (expr.index < 0) {
+            assignedGlobals.add(expr.name.lexeme);
+            markImpure("assigns to '" + expr.name.lexeme + "'");
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitAwaitExpr(Expr.Await expr) {
+        markImpure("awaits a future");
+        analyze(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        analyze(expr.left);
+        analyze(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        // Only calls to globals can be checked, once it is known what they hold
+        if (expr.callee instanceof Expr.Variable && ((Expr.Variable)expr.callee).depth < 0) {
+            if (current != null) current.calls.add(((Expr.Variable)expr.callee).name);
+        } else {
+            markImpure("calls something that is not a global function");
+            analyze(expr.callee);
+        }
+
+        for (Expr argument : expr.arguments) {
+            analyze(argument);
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        analyze(expr.expression);
+        return null;
+    }
+
+    // Arrays and maps are compared by identity, so the same argument can
+    // hold different elements from one call to the next
+    @Override
+    public Void visitIndexExpr(Expr.Index expr) {
+        markImpure("reads an array or map");
+        analyze(expr.object);
+        analyze(expr.index);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        analyze(expr.left);
+        analyze(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitMapExpr(Expr.Map expr) {
+        markImpure("creates a map");
+        for (int i = 0; i < expr.keys.size(); i++) {
+            analyze(expr.keys.get(i));
+            analyze(expr.values.get(i));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitSetIndexExpr(Expr.SetIndex expr) {
+        markImpure("stores into an array or map");
+        analyze(expr.object);
+        analyze(expr.index);
+        analyze(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitSpawnExpr(Expr.Spawn expr) {
+        markImpure("spawns a call");
+        analyze(expr.call);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        analyze(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        if (current == null) return null;
+
+        if (expr.upvalue >= 0) {
+            markImpure("reads '" + expr.name.lexeme + "' of an enclosing function");
+        } else if (expr.index < 0) {
+            current.reads.add(expr.name);
+        }
+
+        return null;
+    }
+
+    private void analyze(Stmt stmt) {
+        stmt.accept(this);
+    }
+
+    private void analyze(Expr expr) {
+        expr.accept(this);
+    }
+}
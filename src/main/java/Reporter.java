@@ -0,0 +1,69 @@
+package main.java;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+// Collects the errors of compiling and running scripts in one context
+// Errors are also printed as they happen if there is somewhere to print them
+class Reporter {
+    private final Output output;
+    private final PrintWriter errors;
+    private final List<String> messages = new ArrayList<>();
+
+    boolean hadError = false;
+    boolean hadRuntimeError = false;
+
+    // Without a PrintWriter, errors are only collected
+    Reporter(Output output, PrintWriter errors) {
+        this.output = output;
+        this.errors = errors;
+    }
+
+    void error(int line, String message) {
+        report(line, "", message);
+    }
+
+    // Shows the error to the user
+    void error(Token token, String message) {
+        if (token.type == TokenType.EOF) {
+            report(token.line, " at end", message);
+        } else {
+            report(token.line, " at '" + token.lexeme + "'", message);
+        }
+    }
+
+    void runtimeError(RuntimeError error) {
+        // The error follows whatever the script printed before it
+        if (output != null) output.flush();
+        print("\n[line " + error.token.line + "] " + error.getMessage());
+
+        hadRuntimeError = true;
+    }
+
+    // The errors since the last call to clear()
+    List<String> messages() {
+        return messages;
+    }
+
+    void clear() {
+        messages.clear();
+        hadError = false;
+        hadRuntimeError = false;
+    }
+
+    // Reports the location and error
+    private void report(int line, String where, String message) {
+        print("[line " + line + "] Error" + where + ": " + message);
+        hadError = true;
+    }
+
+    private void print(String message) {
+        messages.add(message.trim());
+
+        if (errors != null) {
+            errors.println(message);
+            errors.flush();
+        }
+    }
+}
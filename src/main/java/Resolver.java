@@ -1,17 +1,67 @@
 package main.java;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
 
 class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
-    private final Interpreter interpreter;
-    private final Stack<Map<String,Boolean>> scopes = new Stack<>();
+    private final Reporter reporter;
+    private final Stack<Scope> scopes = new Stack<>();
     private FunctionType currentFunction = FunctionType.NONE;
+    private Frame frame = new Frame(null);
 
-    Resolver(Interpreter interpreter) {
-        this.interpreter = interpreter;
+    // Every call in the script gets a number of its own, which engines use
+    // to keep what they learn about the call outside of the tree
+    private int callSites = 0;
+
+    // The global names the script uses, numbered in the order they are found
+    private final Map<String, Integer> globals = new HashMap<>();
+    private final List<String> globalNames = new ArrayList<>();
+
+    Resolver(Reporter reporter) {
+        this.reporter = reporter;
+    }
+
+    // A local variable and the slot it occupies in its scope's frame
+    // The Interpreter instead gives every local of a function its own index
+    // in one flat frame. Declared by a Stmt.Var or Stmt.Function, or as the
+    // parameter at 'param' of a Stmt.Function.
+    private static class Local {
+        final int slot;
+        final Frame frame;
+        final int index;
+        Stmt declaration = null;
+        int param = -1;
+        boolean defined = false;
+
+        Local(int slot, Frame frame, int index) {
+            this.slot = slot;
+            this.frame = frame;
+            this.index = index;
+        }
+    }
+
+    // The flat frame of a function, or of the top-level code
+    // A nested function reaches the locals of enclosing frames through its
+    // captures: a capture >= 0 is the index of a local of the enclosing frame,
+    // a negative one refers to the enclosing frame's capture at -1 - capture
+    private static class Frame {
+        final Frame enclosing;
+        int size = 0;
+        final List<Integer> captures = new ArrayList<>();
+
+        Frame(Frame enclosing) {
+            this.enclosing = enclosing;
+        }
+    }
+
+    // The locals declared in a scope, and the references that were resolved
+    // through it to a local of an enclosing scope
+    private static class Scope {
+        final Map<String, Local> locals = new HashMap<>();
+        final List<Expr> crossing = new ArrayList<>();
     }
 
     private enum FunctionType {
@@ -23,7 +73,7 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     public Void visitBlockStmt(Stmt.Block stmt) {
         beginScope();
         resolve(stmt.statements);
-        endScope();
+        stmt.frameSize = endBlockScope();
         return null;
     }
 
@@ -38,9 +88,89 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    // The initializer's variable lives in a scope of its own around the loop
+    @Override
+    public Void visitForStmt(Stmt.For stmt) {
+        beginScope();
+        if (stmt.initializer != null) resolve(stmt.initializer);
+        resolve(stmt.condition);
+        if (stmt.increment != null) resolve(stmt.increment);
+        resolve(stmt.body);
+        stmt.frameSize = endBlockScope();
+
+        stmt.counted = isCounted(stmt);
+        return null;
+    }
+
+    // The size of the frame the top-level code needs for the locals of its blocks
+    int scriptFrameSize() {
+        return frame.size;
+    }
+
+    int scriptCallSites() {
+        return callSites;
+    }
+
+    List<String> scriptGlobals() {
+        return globalNames;
+    }
+
+    private int global(Token name) {
+        Integer index = globals.get(name.lexeme);
+        if (index == null) {
+            index = globalNames.size();
+            globals.put(name.lexeme, index);
+            globalNames.add(name.lexeme);
+        }
+
+        return index;
+    }
+
+    // Matches 'for (var i = ...; i < bound; i = i + step)' with a literal step,
+    // for any comparison and for subtraction as well
+    private boolean isCounted(Stmt.For stmt) {
+        // A captured variable is boxed, and has to be stepped like any other
+        if (!(stmt.initializer instanceof Stmt.Var)) return false;
+        if (((Stmt.Var)stmt.initializer).captured) return false;
+        int slot = ((Stmt.Var)stmt.initializer).slot;
+
+        if (!(stmt.condition instanceof Expr.Binary)) return false;
+        Expr.Binary condition = (Expr.Binary)stmt.condition;
+        switch (condition.operator.type) {
+            case GREATER: case GREATER_EQUAL: case LESS: case LESS_EQUAL:
+                break;
+            default:
+                return false;
+        }
+        if (!isLoopVariable(condition.left, slot)) return false;
+
+        if (!(stmt.increment instanceof Expr.Assign)) return false;
+        Expr.Assign increment = (Expr.Assign)stmt.increment;
+        if (increment.depth != 0 || increment.slot != slot) return false;
+
+        if (!(increment.value instanceof Expr.Binary)) return false;
+        Expr.Binary step = (Expr.Binary)increment.value;
+        return (step.operator.type == TokenType.PLUS || step.operator.type == TokenType.MINUS) &&
+               isLoopVariable(step.left, slot) &&
+               step.right instanceof Expr.Literal &&
+               ((Expr.Literal)step.right).value instanceof Double;
+    }
+
+    private boolean isLoopVariable(Expr expr, int slot) {
+        return expr instanceof Expr.Variable &&
+               ((Expr.Variable)expr).depth == 0 &&
+               ((Expr.Variable)expr).slot == slot;
+    }
+
     @Override
     public Void visitVarStmt(Stmt.Var stmt) {
-        declare(stmt.name);
+        Local local = declare(stmt.name);
+        if (local != null) {
+            local.declaration = stmt;
+            stmt.slot = local.slot;
+            stmt.index = local.index;
+        }
+
         if (stmt.initializer != null) {
             resolve(stmt.initializer);
         }
@@ -57,18 +187,57 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitVariableExpr(Expr.Variable expr) {
-        if (!scopes.isEmpty() && scopes.peek().get(expr.name.lexeme) == Boolean.FALSE) {
-            Cynch.error(expr.name, "Can't read local variable in its own initializer.");
+        if (!scopes.isEmpty()) {
+            Local local = scopes.peek().locals.get(expr.name.lexeme);
+            if (local != null && !local.defined) {
+                reporter.error(expr.name, "Can't read local variable in its own initializer.");
+            }
+        }
+
+        int scope = resolveLocal(expr, expr.name);
+        if (scope >= 0) {
+            Local local = scopes.get(scope).locals.get(expr.name.lexeme);
+            expr.depth = scopes.size() - 1 - scope;
+            expr.slot = local.slot;
+
+            if (local.frame == frame) {
+                expr.index = local.index;
+            } else {
+                expr.upvalue = capture(frame, local);
+            }
+        } else {
+            expr.global = global(expr.name);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitArrayExpr(Expr.Array expr) {
+        for (Expr element : expr.elements) {
+            resolve(element);
         }
 
-        resolveLocal(expr, expr.name);
         return null;
     }
 
     @Override
     public Void visitAssignExpr(Expr.Assign expr) {
         resolve(expr.value);
-        resolveLocal(expr, expr.name);
+
+        int scope = resolveLocal(expr, expr.name);
+        if (scope >= 0) {
+            Local local = scopes.get(scope).locals.get(expr.name.lexeme);
+            expr.depth = scopes.size() - 1 - scope;
+            expr.slot = local.slot;
+
+            if (local.frame == frame) {
+                expr.index = local.index;
+            } else {
+                expr.upvalue = capture(frame, local);
+            }
+        } else {
+            expr.global = global(expr.name);
+        }
         return null;
     }
     
@@ -79,8 +248,15 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitAwaitExpr(Expr.Await expr) {
+        resolve(expr.value);
+        return null;
+    }
+
     @Override
     public Void visitCallExpr(Expr.Call expr) {
+        expr.site = callSites++;
         resolve(expr.callee);
   
         for (Expr argument : expr.arguments) {
@@ -96,6 +272,13 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitIndexExpr(Expr.Index expr) {
+        resolve(expr.object);
+        resolve(expr.index);
+        return null;
+    }
+
     @Override
     public Void visitLiteralExpr(Expr.Literal expr) {
         return null;
@@ -108,6 +291,30 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitMapExpr(Expr.Map expr) {
+        for (int i = 0; i < expr.keys.size(); i++) {
+            resolve(expr.keys.get(i));
+            resolve(expr.values.get(i));
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitSetIndexExpr(Expr.SetIndex expr) {
+        resolve(expr.object);
+        resolve(expr.index);
+        resolve(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitSpawnExpr(Expr.Spawn expr) {
+        resolve(expr.call);
+        return null;
+    }
+
     @Override
     public Void visitUnaryExpr(Expr.Unary expr) {
         resolve(expr.right);
@@ -116,7 +323,12 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitFunctionStmt(Stmt.Function stmt) {
-        declare(stmt.name);
+        Local local = declare(stmt.name);
+        if (local != null) {
+            local.declaration = stmt;
+            stmt.slot = local.slot;
+            stmt.index = local.index;
+        }
         define(stmt.name);
 
         resolveFunction(stmt, FunctionType.FUNCTION);
@@ -140,12 +352,17 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitReturnStmt(Stmt.Return stmt) {
         if (currentFunction == FunctionType.NONE) {
-            Cynch.error(stmt.keyword, "Can't return from top-level code.");
+            reporter.error(stmt.keyword, "Can't return from top-level code.");
         }
 
         if (stmt.value != null) {
             resolve(stmt.value);
         }
+
+        // Nothing is left to do in the caller after 'return f(...)',
+        // so the call can take over the caller's place
+        stmt.tailCall = stmt.value instanceof Expr.Call &&
+                        currentFunction != FunctionType.NONE;
   
         return null;
     }
@@ -167,48 +384,120 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     private void resolveFunction(Stmt.Function function, FunctionType type) {
         FunctionType enclosingFunction = currentFunction;
         currentFunction = type;
-        
+        frame = new Frame(frame);
+        function.capturedParams = new boolean[function.params.size()];
+
         beginScope();
-        for (Token param : function.params) {
-            declare(param);
-            define(param);
+        for (int i = 0; i < function.params.size(); i++) {
+            Local local = declare(function.params.get(i));
+            local.declaration = function;
+            local.param = i;
+            define(function.params.get(i));
         }
         resolve(function.body);
-        endScope();
+        function.frameSize = endScope();
+
+        function.localCount = frame.size;
+        function.captures = new int[frame.captures.size()];
+        for (int i = 0; i < function.captures.length; i++) {
+            function.captures[i] = frame.captures.get(i);
+        }
+
+        frame = frame.enclosing;
         currentFunction = enclosingFunction;
     }
 
+    // Returns the capture through which the frame reaches a local of an
+    // enclosing frame, adding captures to the frames in between as needed
+    private int capture(Frame frame, Local local) {
+        int capture;
+        if (frame.enclosing == local.frame) {
+            markCaptured(local);
+            capture = local.index;
+        } else {
+            capture = -1 - capture(frame.enclosing, local);
+        }
+
+        int index = frame.captures.indexOf(capture);
+        if (index < 0) {
+            frame.captures.add(capture);
+            index = frame.captures.size() - 1;
+        }
+
+        return index;
+    }
+
+    // A captured local is boxed so that its frame and closures can share it
+    private void markCaptured(Local local) {
+        if (local.declaration instanceof Stmt.Var) {
+            ((Stmt.Var)local.declaration).captured = true;
+        } else if (local.param >= 0) {
+            ((Stmt.Function)local.declaration).capturedParams[local.param] = true;
+        } else {
+            ((Stmt.Function)local.declaration).captured = true;
+        }
+    }
+
     private void beginScope() {
-        scopes.push(new HashMap<String, Boolean>());
+        scopes.push(new Scope());
     }
 
-    private void endScope() {
-        scopes.pop();
+    // Returns the number of slots the scope's frame needs
+    private int endScope() {
+        return scopes.pop().locals.size();
     }
 
-    private void declare(Token name) {
-        if (scopes.isEmpty()) return;
+    // Blocks and loops that declare nothing are run without a frame of their own,
+    // so every reference resolved through such a scope is one scope shorter
+    private int endBlockScope() {
+        Scope scope = scopes.pop();
+
+        if (scope.locals.isEmpty()) {
+            for (Expr reference : scope.crossing) {
+                if (reference instanceof Expr.Variable) {
+                    ((Expr.Variable)reference).depth--;
+                } else {
+                    ((Expr.Assign)reference).depth--;
+                }
+            }
+        }
+
+        return scope.locals.size();
+    }
 
-        Map<String, Boolean> scope = scopes.peek();
+    // Returns the new local, or null if the variable is global
+    private Local declare(Token name) {
+        if (scopes.isEmpty()) return null;
+
+        Map<String, Local> scope = scopes.peek().locals;
 
         if (scope.containsKey(name.lexeme)) {
-            Cynch.error(name, "Already variable with this name in this scope.");
+            reporter.error(name, "Already variable with this name in this scope.");
         }
 
-        scope.put(name.lexeme, false);
+        Local local = new Local(scope.size(), frame, frame.size++);
+        scope.put(name.lexeme, local);
+        return local;
     }
 
     private void define(Token name) {
         if (scopes.isEmpty()) return;
-        scopes.peek().put(name.lexeme, true);
+        scopes.peek().locals.get(name.lexeme).defined = true;
     }
 
-    private void resolveLocal(Expr expr, Token name) {
+    // Returns the index of the scope the variable is declared in
+    // A variable that is not found is assumed to be global (-1)
+    private int resolveLocal(Expr reference, Token name) {
         for (int i = scopes.size() - 1; i >= 0; i--) {
-            if (scopes.get(i).containsKey(name.lexeme)) {
-                interpreter.resolve(expr, scopes.size() - 1 - i);
-                return;
+            if (scopes.get(i).locals.containsKey(name.lexeme)) {
+                for (int j = i + 1; j < scopes.size(); j++) {
+                    scopes.get(j).crossing.add(reference);
+                }
+
+                return i;
             }
         }
+
+        return -1;
     }
 }
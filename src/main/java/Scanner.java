@@ -1,24 +1,39 @@
 package main.java;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import static main.java.TokenType.*;
 
-class Scanner {
-    private final String source;
-    private final List<Token> tokens = new ArrayList<>();
+// Scans one token at a time, when the Parser asks for it
+// A script read from a Reader passes through a window that only holds the
+// token being scanned, so memory does not grow with the size of the script
+class Scanner implements TokenStream {
+    private static final int WINDOW_SIZE = 8 * 1024;
+
+    private final Reader reader;
+    private final Reporter reporter;
+    private char[] buffer;
+    private int limit;
     private int start = 0;
     private int current = 0;
     private int line = 1;
 
+    // Set by addToken() for nextToken() to return
+    private Token token = null;
+
     private static final Map<String, TokenType> keywords;
 
     static {
         keywords = new HashMap<>();
         keywords.put("and",         AND);
+        keywords.put("await",       AWAIT);
         keywords.put("break",       BREAK);
         keywords.put("class",       CLASS);
         keywords.put("else",        ELSE);
@@ -26,10 +41,12 @@ class Scanner {
         keywords.put("for",         FOR);
         keywords.put("fun",         FUN);
         keywords.put("if",          IF);
+        keywords.put("memo",        MEMO);
         keywords.put("nil",         NIL);
         keywords.put("or",          OR);
         keywords.put("print",       PRINT);
         keywords.put("return",      RETURN);
+        keywords.put("spawn",       SPAWN);
         keywords.put("super",       SUPER);
         keywords.put("this",        THIS);
         keywords.put("true",        TRUE);
@@ -37,17 +54,50 @@ class Scanner {
         keywords.put("while",       WHILE);
     }
 
-    Scanner(String source) {
-        this.source = source;
+    // Lexemes are interned rather than copied out of the window for every token
+    private final SymbolTable symbols = new SymbolTable(keywords);
+
+    // A source that is already in memory fits in a single window
+    Scanner(String source, Reporter reporter) {
+        this.reader = null;
+        this.reporter = reporter;
+        this.buffer = source.toCharArray();
+        this.limit = buffer.length;
+    }
+
+    Scanner(Reader reader, Reporter reporter) {
+        this.reader = reader;
+        this.reporter = reporter;
+        this.buffer = new char[WINDOW_SIZE];
+        this.limit = 0;
     }
 
-    List<Token> scanTokens() {
+    @Override
+    public Token nextToken() {
         while (!isAtEnd()) {
             start = current;
             scanToken();
+
+            if (token != null) {
+                Token next = token;
+                token = null;
+                return next;
+            }
         }
 
-        tokens.add(new Token(EOF, "", null, line));
+        return new Token(EOF, "", null, line);
+    }
+
+    // Scans all the tokens at once
+    List<Token> scanTokens() {
+        List<Token> tokens = new ArrayList<>();
+
+        Token next;
+        do {
+            next = nextToken();
+            tokens.add(next);
+        } while (next.type != EOF);
+
         return tokens;
     }
 
@@ -59,6 +109,9 @@ class Scanner {
             case ')': addToken(RIGHT_PAREN); break;
             case '{': addToken(LEFT_BRACE); break;
             case '}': addToken(RIGHT_BRACE); break;
+            case '[': addToken(LEFT_BRACKET); break;
+            case ']': addToken(RIGHT_BRACKET); break;
+            case ':': addToken(COLON); break;
             case ',': addToken(COMMA); break;
             case '.': addToken(DOT); break;
             case '-': addToken(MINUS); break;
@@ -80,7 +133,11 @@ class Scanner {
             case '/':
                 if (match('/')) {
                     // Ignores comments (goes to end of line)
-                    while (peek() != '\n' && !isAtEnd()) advance();
+                    // Nothing of them is kept, so they can be longer than the window
+                    while (peek() != '\n' && !isAtEnd()) {
+                        advance();
+                        start = current;
+                    }
                 } else {
                     addToken(SLASH);
                 }
@@ -106,7 +163,7 @@ class Scanner {
                 } else if (isAlpha(c)) {
                     identifier();
                 } else {
-                    Cynch.error(line, "Unexpected character.");
+                    reporter.error(line, "Unexpected character.");
                 }
                 break;
         }
@@ -114,26 +171,59 @@ class Scanner {
 
     // ***** Helper Functions ***** //
     private boolean isAtEnd() {
-        return current >= source.length();
+        return current >= limit && !fill();
     }
 
+    // Reads more of the source, keeping the token being scanned
+    // The token is moved to the front of the window, which grows if the token
+    // fills it. Returns false at the end of the source.
+    private boolean fill() {
+        if (reader == null) return false;
+
+        if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, limit - start);
+            limit -= start;
+            current -= start;
+            start = 0;
+        }
+
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+
+        try {
+            int read = reader.read(buffer, limit, buffer.length - limit);
+            if (read <= 0) return false;
+
+            limit += read;
+            return true;
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    // Only called once peek() or isAtEnd() has made sure there is a character
     private char advance() {
-        return source.charAt(current++);
+        return buffer[current++];
     }
 
     private void addToken(TokenType type) {
-        addToken(type, null);
+        addToken(symbol(type));
+    }
+
+    private void addToken(SymbolTable.Symbol symbol) {
+        token = new Token(symbol.type, symbol.text, symbol.literal, line);
     }
 
-    private void addToken(TokenType type, Object literal) {
-        String text = source.substring(start, current);
-        tokens.add(new Token(type, text, literal, line));
+    // The interned lexeme of the token being scanned
+    private SymbolTable.Symbol symbol(TokenType type) {
+        return symbols.intern(buffer, start, current - start, type);
     }
 
     // Consumes the current character ONLY if it is expected
     private boolean match(char expected) {
         if (isAtEnd()) return false;
-        if (source.charAt(current) != expected) return false;
+        if (buffer[current] != expected) return false;
 
         current++;
         return true;
@@ -143,13 +233,15 @@ class Scanner {
     // One character of lookahead
     private char peek() {
         if (isAtEnd()) return '\0';
-        return source.charAt(current);
+        return buffer[current];
     }
 
     // Two characters of lookahead
     private char peekNext() {
-        if (current + 1 >= source.length()) return '\0';
-        return source.charAt(current + 1);
+        while (current + 1 >= limit) {
+            if (!fill()) return '\0';
+        }
+        return buffer[current + 1];
     }
 
     // Detects the entire string and checks if it is terminated
@@ -163,7 +255,7 @@ class Scanner {
         }
 
         if (isAtEnd()) {
-            Cynch.error(line, "Unterminated string.");
+            reporter.error(line, "Unterminated string.");
             return;
         }
 
@@ -171,8 +263,11 @@ class Scanner {
         advance();
 
         // Trim quotes
-        String value = source.substring(start + 1, current - 1);
-        addToken(STRING, value);
+        SymbolTable.Symbol symbol = symbol(STRING);
+        if (symbol.literal == null) {
+            symbol.literal = symbol.text.substring(1, symbol.text.length() - 1);
+        }
+        addToken(symbol);
     }
 
     private boolean isDigit(char c) {
@@ -190,16 +285,16 @@ class Scanner {
             while (isDigit(peek())) advance();
         }
 
-        addToken(NUMBER, Double.parseDouble(source.substring(start, current)));
+        SymbolTable.Symbol symbol = symbol(NUMBER);
+        if (symbol.literal == null) symbol.literal = Double.parseDouble(symbol.text);
+        addToken(symbol);
     }
 
     private void identifier() {
         while (isAlphaNumeric(peek())) advance();
 
-        String text = source.substring(start, current);
-        TokenType type = keywords.get(text);
-        if (type == null) type = IDENTIFIER;
-        addToken(type);
+        // Keywords are already interned with their type
+        addToken(IDENTIFIER);
     }
 
     private boolean isAlpha(char c) {
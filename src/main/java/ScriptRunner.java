@@ -0,0 +1,257 @@
+package main.java;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Runs many executions of script files concurrently, e.g. to serve requests
+// Each distinct source is compiled once and kept in a bounded cache, least
+// recently used first out, and so are the latencies of each path. Every
+// execution runs in a context of its own on a thread of its own, virtual if
+// the JVM has them.
+public final class ScriptRunner implements AutoCloseable {
+    // How many recent latencies of a script its percentiles are taken over
+    private static final int LATENCY_WINDOW = 1024;
+
+    private final CynchContext.Engine engine;
+    private final ExecutorService executor = newExecutor();
+
+    // Compiled scripts by a hash of their source, including those that
+    // failed to compile, so that they are not compiled again either
+    private final Map<String, CompletableFuture<CynchScript>> scripts;
+
+    private final Map<Path, Latencies> latencies;
+
+    private final long started = System.nanoTime();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+
+    // What an execution printed and the errors it failed with, if any
+    public static final class Result {
+        public final Path script;
+        public final String output;
+        public final List<String> errors;
+        public final long latencyNanos;
+
+        Result(Path script, String output, List<String> errors, long latencyNanos) {
+            this.script = script;
+            this.output = output;
+            this.errors = errors;
+            this.latencyNanos = latencyNanos;
+        }
+
+        public boolean succeeded() {
+            return errors.isEmpty();
+        }
+    }
+
+    // The most recent latencies of one script, in nanoseconds
+    private static class Latencies {
+        final long[] samples = new long[LATENCY_WINDOW];
+        long count = 0;
+
+        void add(long latency) {
+            samples[(int)(count++ % LATENCY_WINDOW)] = latency;
+        }
+
+        long percentile(double percentile) {
+            int size = (int)Math.min(count, LATENCY_WINDOW);
+            if (size == 0) return 0;
+
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            int rank = (int)Math.ceil(percentile / 100 * size) - 1;
+            return sorted[Math.max(rank, 0)];
+        }
+    }
+
+    public ScriptRunner(CynchContext.Engine engine, int cacheSize) {
+        this.engine = engine;
+        this.scripts = leastRecentlyUsed(cacheSize);
+        this.latencies = leastRecentlyUsed(cacheSize);
+    }
+
+    // A map that drops its least recently used entry beyond 'capacity'
+    private static <K, V> Map<K, V> leastRecentlyUsed(int capacity) {
+        return new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    // Without virtual threads, there is a platform thread per core
+    private static ExecutorService newExecutor() {
+        ExecutorService executor = Threads.newVirtualThreadExecutor();
+        if (executor != null) return executor;
+
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    // Runs the script at the path with the parameters defined as globals
+    public Future<Result> submit(Path script, Map<String, Object> parameters) {
+        long submitted = System.nanoTime();
+        queued.incrementAndGet();
+
+        return executor.submit(() -> {
+            queued.decrementAndGet();
+            running.incrementAndGet();
+
+            try {
+                return execute(script, parameters, submitted);
+            } finally {
+                running.decrementAndGet();
+                completed.incrementAndGet();
+            }
+        });
+    }
+
+    private Result execute(Path path, Map<String, Object> parameters, long submitted)
+            throws IOException {
+        StringWriter out = new StringWriter();
+        List<String> errors = List.of();
+
+        try {
+            CynchContext context = new CynchContext(out, engine);
+            for (Map.Entry<String, Object> parameter : parameters.entrySet()) {
+                context.define(parameter.getKey(), parameter.getValue());
+            }
+
+            context.run(compile(path));
+        } catch (CynchException error) {
+            errors = error.errors();
+        }
+
+        long latency = System.nanoTime() - submitted;
+        synchronized (latencies) {
+            latencies.computeIfAbsent(path, key -> new Latencies()).add(latency);
+        }
+
+        return new Result(path, out.toString(), errors, latency);
+    }
+
+    // Only the first execution of a source compiles it, the others wait for it
+    private CynchScript compile(Path path) throws IOException, CynchException {
+        byte[] source = Files.readAllBytes(path);
+        String key = hash(source);
+
+        CompletableFuture<CynchScript> script;
+        boolean compiling = false;
+        synchronized (scripts) {
+            script = scripts.get(key);
+            if (script == null) {
+                script = new CompletableFuture<>();
+                scripts.put(key, script);
+                compiling = true;
+            }
+        }
+
+        if (compiling) {
+            try {
+                script.complete(CynchScript.compile(new String(source, Charset.defaultCharset())));
+            } catch (Throwable error) {
+                // Every waiter fails with the error, e.g. a StackOverflowError
+                // from a deeply nested source, but only errors in the script
+                // stay cached. Anything else is compiled again next time.
+                script.completeExceptionally(error);
+                if (!(error instanceof CynchException)) {
+                    synchronized (scripts) {
+                        scripts.remove(key, script);
+                    }
+                }
+            }
+        }
+
+        try {
+            return script.join();
+        } catch (CompletionException error) {
+            if (error.getCause() instanceof CynchException) {
+                throw (CynchException)error.getCause();
+            }
+            if (error.getCause() instanceof Error) throw (Error)error.getCause();
+            throw error;
+        }
+    }
+
+    private static String hash(byte[] source) {
+        try {
+            StringBuilder hash = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(source)) {
+                hash.append(String.format("%02x", b));
+            }
+            return hash.toString();
+        } catch (NoSuchAlgorithmException error) {
+            throw new IllegalStateException(error);
+        }
+    }
+
+    // Executions per second since the runner was created
+    public double throughput() {
+        double seconds = (System.nanoTime() - started) / 1e9;
+        return completed.get() / seconds;
+    }
+
+    // Executions that were submitted but have not started yet
+    public int queueDepth() {
+        return queued.get();
+    }
+
+    // The latency under which the given percentage of the script's recent
+    // executions completed, in nanoseconds
+    public long latency(Path script, double percentile) {
+        synchronized (latencies) {
+            Latencies recent = latencies.get(script);
+            return recent == null ? 0 : recent.percentile(percentile);
+        }
+    }
+
+    // One line for the runner and one for each script
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("[runner] %d completed, %.1f/s, %d queued, %d running%n",
+                                    completed.get(), throughput(), queueDepth(), running.get()));
+
+        synchronized (latencies) {
+            for (Map.Entry<Path, Latencies> script : latencies.entrySet()) {
+                Latencies recent = script.getValue();
+                report.append(String.format("[runner] %s: p50 %.2fms, p90 %.2fms, p99 %.2fms%n",
+                                            script.getKey(),
+                                            recent.percentile(50) / 1e6,
+                                            recent.percentile(90) / 1e6,
+                                            recent.percentile(99) / 1e6));
+            }
+        }
+
+        return report.toString();
+    }
+
+    // Waits for the submitted executions to complete
+    // If the waiting thread is interrupted, it stops waiting and stays interrupted
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
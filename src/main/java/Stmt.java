@@ -7,6 +7,7 @@ abstract class Stmt {
         R visitBlockStmt(Block stmt);
         R visitBreakStmt(Break stmt);
         R visitExpressionStmt(Expression stmt);
+        R visitForStmt(For stmt);
         R visitIfStmt(If stmt);
         R visitFunctionStmt(Function stmt);
         R visitPrintStmt(Print stmt);
@@ -25,6 +26,11 @@ abstract class Stmt {
   }
 
     final List<Stmt> statements;
+
+    // Resolution data
+    int frameSize;
+    int callSites;
+    List<String> globals;
   }
   static class Break extends Stmt {
     Break() {
@@ -48,6 +54,28 @@ abstract class Stmt {
 
     final Expr expression;
   }
+  static class For extends Stmt {
+    For(Stmt initializer, Expr condition, Expr increment, Stmt body) {
+      this.initializer = initializer;
+      this.condition = condition;
+      this.increment = increment;
+      this.body = body;
+    }
+
+  @Override
+  <R> R accept(Visitor<R> visitor) {
+      return visitor.visitForStmt(this);
+  }
+
+    final Stmt initializer;
+    final Expr condition;
+    final Expr increment;
+    final Stmt body;
+
+    // Resolution data
+    int frameSize;
+    boolean counted;
+  }
   static class If extends Stmt {
     If(Expr condition, Stmt thenBranch, Stmt elseBranch) {
       this.condition = condition;
@@ -65,10 +93,11 @@ abstract class Stmt {
     final Stmt elseBranch;
   }
   static class Function extends Stmt {
-    Function(Token name, List<Token> params, List<Stmt> body) {
+    Function(Token name, List<Token> params, List<Stmt> body, Token memo) {
       this.name = name;
       this.params = params;
       this.body = body;
+      this.memo = memo;
     }
 
   @Override
@@ -79,6 +108,17 @@ abstract class Stmt {
     final Token name;
     final List<Token> params;
     final List<Stmt> body;
+    final Token memo;
+
+    // Resolution data
+    int slot = -1;
+    int frameSize;
+    int index = -1;
+    boolean captured;
+    int localCount;
+    boolean[] capturedParams;
+    int[] captures;
+    int memoIndex = -1;
   }
   static class Print extends Stmt {
     Print(Expr expression) {
@@ -105,6 +145,9 @@ abstract class Stmt {
 
     final Token keyword;
     final Expr value;
+
+    // Resolution data
+    boolean tailCall;
   }
   static class Var extends Stmt {
     Var(Token name, Expr initializer) {
@@ -119,6 +162,11 @@ abstract class Stmt {
 
     final Token name;
     final Expr initializer;
+
+    // Resolution data
+    int slot = -1;
+    int index = -1;
+    boolean captured;
   }
   static class While extends Stmt {
     While(Expr condition, Stmt body) {
@@ -0,0 +1,291 @@
+package main.java;
+
+// Executable statement nodes
+// 'break' and 'return' unwind with stackless exceptions, as Truffle does
+abstract class StmtNode extends Node {
+    abstract void execute(Environment frame);
+
+    // Thrown by 'break' and caught by the innermost loop
+    // A single instance is enough since it carries no state
+    static final BreakException BREAK = new BreakException();
+
+    // Runs statements in the given frame without opening a scope
+    static class Sequence extends StmtNode {
+        Sequence(StmtNode[] statements) {
+            this.statements = statements;
+            for (StmtNode statement : statements) {
+                adopt(statement);
+            }
+        }
+
+        @Override
+        void execute(Environment frame) {
+            for (StmtNode statement : statements) {
+                statement.execute(frame);
+            }
+        }
+
+        final StmtNode[] statements;
+    }
+
+    static class Block extends StmtNode {
+        Block(int frameSize, StmtNode[] statements) {
+            this.frameSize = frameSize;
+            this.statements = statements;
+            for (StmtNode statement : statements) {
+                adopt(statement);
+            }
+        }
+
+        @Override
+        void execute(Environment frame) {
+            Environment scope = new Environment(frame, frameSize);
+            for (StmtNode statement : statements) {
+                statement.execute(scope);
+            }
+        }
+
+        final int frameSize;
+        final StmtNode[] statements;
+    }
+
+    static class Break extends StmtNode {
+        @Override
+        void execute(Environment frame) {
+            throw BREAK;
+        }
+    }
+
+    static class Expression extends StmtNode {
+        Expression(ExprNode expression) {
+            this.expression = adopt(expression);
+        }
+
+        @Override
+        void execute(Environment frame) {
+            expression.execute(frame);
+        }
+
+        @Override
+        void replaceChild(Node oldChild, Node newChild) {
+            expression = (ExprNode)newChild;
+        }
+
+        ExprNode expression;
+    }
+
+    // Runs in a scope of its own that holds the initializer's variable
+    static class For extends StmtNode {
+        For(int frameSize, StmtNode initializer, ExprNode condition,
+            ExprNode increment, StmtNode body) {
+            this.frameSize = frameSize;
+            this.initializer = adopt(initializer);
+            this.condition = adopt(condition);
+            this.increment = adopt(increment);
+            this.body = adopt(body);
+        }
+
+        @Override
+        void execute(Environment frame) {
+            Environment scope = frameSize == 0 ? frame : new Environment(frame, frameSize);
+            if (initializer != null) initializer.execute(scope);
+
+            try {
+                while (condition.executeCondition(scope)) {
+                    body.execute(scope);
+                    if (increment != null) increment.execute(scope);
+                }
+            } catch (BreakException ex) {
+
+            }
+        }
+
+        @Override
+        void replaceChild(Node oldChild, Node newChild) {
+            if (oldChild == condition) {
+                condition = (ExprNode)newChild;
+            } else {
+                increment = (ExprNode)newChild;
+            }
+        }
+
+        final int frameSize;
+        final StmtNode initializer;
+        ExprNode condition;
+        ExprNode increment;
+        final StmtNode body;
+    }
+
+    static class If extends StmtNode {
+        If(ExprNode condition, StmtNode thenBranch, StmtNode elseBranch) {
+            this.condition = adopt(condition);
+            this.thenBranch = adopt(thenBranch);
+            this.elseBranch = adopt(elseBranch);
+        }
+
+        @Override
+        void execute(Environment frame) {
+            if (condition.executeCondition(frame)) {
+                thenBranch.execute(frame);
+            } else if (elseBranch != null) {
+                elseBranch.execute(frame);
+            }
+        }
+
+        @Override
+        void replaceChild(Node oldChild, Node newChild) {
+            condition = (ExprNode)newChild;
+        }
+
+        ExprNode condition;
+        final StmtNode thenBranch;
+        final StmtNode elseBranch;
+    }
+
+    // Creates a closure over the current frame and defines it
+    static class Function extends StmtNode {
+        Function(String name, int arity, int frameSize, MemoCache cache,
+                 StmtNode body, Define define) {
+            this.name = name;
+            this.arity = arity;
+            this.frameSize = frameSize;
+            this.cache = cache;
+            this.body = adopt(body);
+            this.define = define;
+        }
+
+        @Override
+        void execute(Environment frame) {
+            define.define(frame, new NodeFunction(this, frame));
+        }
+
+        final String name;
+        final int arity;
+        final int frameSize;
+        final MemoCache cache;
+        final StmtNode body;
+        final Define define;
+    }
+
+    static class Print extends StmtNode {
+        Print(Output output, ExprNode expression) {
+            this.output = output;
+            this.expression = adopt(expression);
+        }
+
+        @Override
+        void execute(Environment frame) {
+            output.println(Interpreter.stringify(expression.execute(frame)));
+        }
+
+        @Override
+        void replaceChild(Node oldChild, Node newChild) {
+            expression = (ExprNode)newChild;
+        }
+
+        final Output output;
+        ExprNode expression;
+    }
+
+    static class Return extends StmtNode {
+        Return(ExprNode value) {
+            this.value = adopt(value);
+        }
+
+        @Override
+        void execute(Environment frame) {
+            throw new main.java.Return(value == null ? null : value.execute(frame));
+        }
+
+        @Override
+        void replaceChild(Node oldChild, Node newChild) {
+            value = (ExprNode)newChild;
+        }
+
+        ExprNode value;
+    }
+
+    // Returns the result of a call by letting the callee take the caller's place
+    static class TailReturn extends StmtNode {
+        TailReturn(ExprNode.Call call) {
+            this.call = adopt(call);
+        }
+
+        @Override
+        void execute(Environment frame) {
+            throw new main.java.Return(call.executeTail(frame));
+        }
+
+        final ExprNode.Call call;
+    }
+
+    // Defines a variable or function, either in a frame slot or in its Global
+    static class Define {
+        Define(Environment.Global global, int slot) {
+            this.global = global;
+            this.slot = slot;
+        }
+
+        void define(Environment frame, Object value) {
+            if (slot < 0) {
+                global.value = value;
+            } else {
+                frame.slots[slot] = value;
+            }
+        }
+
+        final Environment.Global global;
+        final int slot;
+    }
+
+    static class Var extends StmtNode {
+        Var(ExprNode initializer, Define define) {
+            this.initializer = adopt(initializer);
+            this.define = define;
+        }
+
+        @Override
+        void execute(Environment frame) {
+            Object value = null;
+            if (initializer != null) {
+                value = initializer.execute(frame);
+            }
+
+            define.define(frame, value);
+        }
+
+        @Override
+        void replaceChild(Node oldChild, Node newChild) {
+            initializer = (ExprNode)newChild;
+        }
+
+        ExprNode initializer;
+        final Define define;
+    }
+
+    static class While extends StmtNode {
+        While(ExprNode condition, StmtNode body) {
+            this.condition = adopt(condition);
+            this.body = adopt(body);
+        }
+
+        @Override
+        void execute(Environment frame) {
+            try {
+                while (condition.executeCondition(frame)) {
+                    body.execute(frame);
+                }
+            } catch (BreakException ex) {
+
+            }
+        }
+
+        @Override
+        void replaceChild(Node oldChild, Node newChild) {
+            condition = (ExprNode)newChild;
+        }
+
+        ExprNode condition;
+        final StmtNode body;
+    }
+}
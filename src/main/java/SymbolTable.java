@@ -0,0 +1,89 @@
+package main.java;
+
+import java.util.Map;
+
+// Interns the lexemes a Scanner finds, straight from its window of characters
+// A name, number or string that appears many times in a script becomes a
+// String only once, and every token of it shares that String. Lookups of the
+// name, e.g. in an Environment, then find it by identity.
+class SymbolTable {
+    static class Symbol {
+        final String text;
+        final TokenType type;
+        final int hash;
+
+        // The value of a number or string, computed once
+        Object literal = null;
+
+        Symbol(String text, TokenType type, int hash) {
+            this.text = text;
+            this.type = type;
+            this.hash = hash;
+        }
+    }
+
+    // Open addressing with linear probing, kept at most half full
+    private Symbol[] symbols = new Symbol[256];
+    private int count = 0;
+
+    // Keywords are interned up front, so scanning one gives its type
+    SymbolTable(Map<String, TokenType> keywords) {
+        for (Map.Entry<String, TokenType> keyword : keywords.entrySet()) {
+            char[] text = keyword.getKey().toCharArray();
+            intern(text, 0, text.length, keyword.getValue());
+        }
+    }
+
+    // Returns the symbol for the given characters, adding it with the given
+    // type if it is new
+    Symbol intern(char[] chars, int start, int length, TokenType type) {
+        int hash = 0;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+
+        int mask = symbols.length - 1;
+        int index = spread(hash) & mask;
+
+        for (Symbol symbol = symbols[index]; symbol != null; symbol = symbols[index]) {
+            if (symbol.hash == hash && matches(symbol.text, chars, start, length)) {
+                return symbol;
+            }
+            index = (index + 1) & mask;
+        }
+
+        Symbol symbol = new Symbol(new String(chars, start, length), type, hash);
+        symbols[index] = symbol;
+        if (++count * 2 > symbols.length) grow();
+        return symbol;
+    }
+
+    // Mixes the high bits into the low ones, which pick the slot
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(String text, char[] chars, int start, int length) {
+        if (text.length() != length) return false;
+
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) != chars[start + i]) return false;
+        }
+
+        return true;
+    }
+
+    private void grow() {
+        Symbol[] old = symbols;
+        symbols = new Symbol[old.length * 2];
+        int mask = symbols.length - 1;
+
+        for (Symbol symbol : old) {
+            if (symbol == null) continue;
+
+            int index = spread(symbol.hash) & mask;
+            while (symbols[index] != null) index = (index + 1) & mask;
+            symbols[index] = symbol;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package main.java;
+
+// Thrown by a tail call in the node engine and caught by the NodeFunction
+// whose call it replaces
+class TailCallException extends RuntimeException {
+    final NodeFunction function;
+    final Object[] arguments;
+
+    TailCallException(NodeFunction function, Object[] arguments) {
+        super(null, null, false, false);
+        this.function = function;
+        this.arguments = arguments;
+    }
+}
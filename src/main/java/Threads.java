@@ -0,0 +1,21 @@
+package main.java;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Where the threads that run scripts, and the calls scripts spawn, come from
+final class Threads {
+    private Threads() {}
+
+    // Virtual threads came with Java 21, so they are looked up reflectively
+    // Returns null on an older JVM
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService)factory.invoke(null);
+        } catch (ReflectiveOperationException error) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package main.java;
+
+// Where the Parser pulls its tokens from, one at a time
+// Once the end is reached, every call returns an EOF token
+interface TokenStream {
+    Token nextToken();
+}
@@ -3,7 +3,8 @@ package main.java;
 enum TokenType {
     // Single-character tokens
     LEFT_PAREN, RIGHT_PAREN, LEFT_BRACE, RIGHT_BRACE,
-    COMMA, DOT, MINUS, PLUS, SEMICOLON, SLASH, STAR,
+    LEFT_BRACKET, RIGHT_BRACKET,
+    COLON, COMMA, DOT, MINUS, PLUS, SEMICOLON, SLASH, STAR,
 
     // One or two character tokens
     BANG, BANG_EQUAL,
@@ -15,8 +16,8 @@ enum TokenType {
     IDENTIFIER, STRING, NUMBER,
 
     // Keywords
-    AND, BREAK, CLASS, ELSE, FALSE, FUN, FOR, IF, NIL, OR,
-    PRINT, RETURN, SUPER, THIS, TRUE, VAR, WHILE,
+    AND, AWAIT, BREAK, CLASS, ELSE, FALSE, FUN, FOR, IF, MEMO, NIL, OR,
+    PRINT, RETURN, SPAWN, SUPER, THIS, TRUE, VAR, WHILE,
     
 
     EOF
@@ -0,0 +1,13 @@
+package main.java;
+
+// Thrown by a specialized execute method (like executeDouble) when the value
+// it computed does not have the expected type
+// It carries the boxed value so that nothing has to be evaluated twice
+class UnexpectedResultException extends Exception {
+    final Object result;
+
+    UnexpectedResultException(Object result) {
+        super(null, null, false, false);
+        this.result = result;
+    }
+}
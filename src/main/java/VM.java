@@ -0,0 +1,501 @@
+package main.java;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// A stack-based virtual machine that runs the output of the BytecodeCompiler
+// Expressions are evaluated on the value stack, variables live in Environments
+class VM {
+    private static final int FRAMES_MAX = 1 << 16;
+
+    final Environment globals;
+    private final Output output;
+    private final Reporter reporter;
+
+    private Object[] stack = new Object[256];
+    private int stackTop = 0;
+
+    private CallFrame[] frames = new CallFrame[64];
+    private int frameCount = 0;
+
+    // An active call: the function, where it is in its chunk and its current scope
+    // A call to a memoized function also keeps the arguments to store its result under
+    private static class CallFrame {
+        VmFunction function;
+        int ip;
+        Environment environment;
+        MemoCache cache;
+        List<Object> arguments;
+    }
+
+    VM(Output output, Reporter reporter) {
+        this.globals = new Environment();
+        this.output = output;
+        this.reporter = reporter;
+        Interpreter.defineNatives(globals, output);
+    }
+
+    // A VM for a spawned call, with stacks of its own and the globals and
+    // output of the one that spawned it
+    private VM(VM parent) {
+        this.globals = parent.globals;
+        this.output = parent.output;
+        this.reporter = parent.reporter;
+    }
+
+    void interpret(VmFunction script) {
+        try {
+            pushFrame(script, globals, null);
+            run();
+        } catch (RuntimeError error) {
+            reporter.runtimeError(error);
+        } finally {
+            Arrays.fill(stack, 0, stackTop, null);
+            stackTop = 0;
+            frameCount = 0;
+        }
+    }
+
+    // Runs a spawned call to completion and returns its result
+    private Object call(VmClosure closure, List<Object> arguments) {
+        MemoCache cache = closure.function.cache;
+        if (cache != null) {
+            Object result = cache.get(arguments);
+            if (result != MemoCache.MISS) return result;
+        }
+
+        Environment environment = new Environment(closure.closure, closure.function.frameSize);
+        for (int i = 0; i < arguments.size(); i++) {
+            environment.slots[i] = arguments.get(i);
+        }
+
+        CallFrame frame = pushFrame(closure.function, environment, null);
+        if (cache != null) {
+            frame.cache = cache;
+            frame.arguments = arguments;
+        }
+        return run();
+    }
+
+    // The dispatch loop, which returns the result of the bottom frame
+    // The state of the current frame is kept in locals and only written back on calls
+    private Object run() {
+        CallFrame frame = frames[frameCount - 1];
+        byte[] code = frame.function.chunk.code;
+        Object[] constants = frame.function.chunk.constants;
+        Environment environment = frame.environment;
+        int ip = frame.ip;
+
+        for (;;) {
+            int start = ip;
+
+            switch (code[ip++]) {
+                case OpCode.CONSTANT: {
+                    int index = ((code[ip++] & 0xff) << 8) | (code[ip++] & 0xff);
+                    push(constants[index]);
+                    break;
+                }
+                case OpCode.NIL: push(null); break;
+                case OpCode.TRUE: push(true); break;
+                case OpCode.FALSE: push(false); break;
+                case OpCode.POP: stack[--stackTop] = null; break;
+
+                case OpCode.GET_LOCAL: {
+                    int depth = ((code[ip++] & 0xff) << 8) | (code[ip++] & 0xff);
+                    int slot = ((code[ip++] & 0xff) << 8) | (code[ip++] & 0xff);
+                    push(environment.getAt(depth, slot));
+                    break;
+                }
+                case OpCode.SET_LOCAL: {
+                    int depth = ((code[ip++] & 0xff) << 8) | (code[ip++] & 0xff);
+                    int slot = ((code[ip++] & 0xff) << 8) | (code[ip++] & 0xff);
+                    environment.assignAt(depth, slot, stack[stackTop - 1]);
+                    break;
+                }
+                case OpCode.DEFINE_LOCAL: {
+                    int slot = ((code[ip++] & 0xff) << 8) | (code[ip++] & 0xff);
+                    environment.slots[slot] = pop();
+                    break;
+                }
+                case OpCode.GET_GLOBAL: {
+                    int index = ((code[ip++] & 0xff) << 8) | (code[ip++] & 0xff);
+                    Environment.Global global = (Environment.Global)constants[index];
+                    push(global.get(frame.function.chunk.tokens[start]));
+                    break;
+                }
+                case OpCode.SET_GLOBAL: {
+                    int index = ((code[ip++] & 0xff) << 8) | (code[ip++] & 0xff);
+                    Environment.Global global = (Environment.Global)constants[index];
+                    global.assign(frame.function.chunk.tokens[start], stack[stackTop - 1]);
+                    break;
+                }
+                case OpCode.DEFINE_GLOBAL: {
+                    int index = ((code[ip++] & 0xff) << 8) | (code[ip++] & 0xff);
+                    ((Environment.Global)constants[index]).value = pop();
+                    break;
+                }
+
+                case OpCode.EQUAL: {
+                    Object b = pop();
+                    Object a = pop();
+                    push(Interpreter.isEqual(a, b));
+                    break;
+                }
+                case OpCode.NOT_EQUAL: {
+                    Object b = pop();
+                    Object a = pop();
+                    push(!Interpreter.isEqual(a, b));
+                    break;
+                }
+                case OpCode.GREATER: {
+                    Object b = pop();
+                    Object a = pop();
+                    checkNumberOperands(frame, start, a, b);
+                    push((double)a > (double)b);
+                    break;
+                }
+                case OpCode.GREATER_EQUAL: {
+                    Object b = pop();
+                    Object a = pop();
+                    checkNumberOperands(frame, start, a, b);
+                    push((double)a >= (double)b);
+                    break;
+                }
+                case OpCode.LESS: {
+                    Object b = pop();
+                    Object a = pop();
+                    checkNumberOperands(frame, start, a, b);
+                    push((double)a < (double)b);
+                    break;
+                }
+                case OpCode.LESS_EQUAL: {
+                    Object b = pop();
+                    Object a = pop();
+                    checkNumberOperands(frame, start, a, b);
+                    push((double)a <= (double)b);
+                    break;
+                }
+                case OpCode.ADD: {
+                    Object b = pop();
+                    Object a = pop();
+                    push(add(frame, start, a, b));
+                    break;
+                }
+                case OpCode.SUBTRACT: {
+                    Object b = pop();
+                    Object a = pop();
+                    checkNumberOperands(frame, start, a, b);
+                    push((double)a - (double)b);
+                    break;
+                }
+                case OpCode.MULTIPLY: {
+                    Object b = pop();
+                    Object a = pop();
+                    checkNumberOperands(frame, start, a, b);
+                    push((double)a * (double)b);
+                    break;
+                }
+                case OpCode.DIVIDE: {
+                    Object b = pop();
+                    Object a = pop();
+                    checkNumberOperands(frame, start, a, b);
+                    if ((double)b == 0) {
+                        throw error(frame, start, "Cannot divide by zero.");
+                    }
+                    push((double)a / (double)b);
+                    break;
+                }
+                case OpCode.NOT:
+                    push(!Interpreter.isTruthy(pop()));
+                    break;
+                case OpCode.NEGATE: {
+                    Object a = pop();
+                    if (!(a instanceof Double)) {
+                        throw error(frame, start, "Operand must be a number");
+                    }
+                    push(-(double)a);
+                    break;
+                }
+
+                case OpCode.PRINT:
+                    output.println(Interpreter.stringify(pop()));
+                    break;
+                case OpCode.JUMP: {
+                    int offset = ((code[ip++] & 0xff) << 8) | (code[ip++] & 0xff);
+                    ip += offset;
+                    break;
+                }
+                case OpCode.JUMP_IF_FALSE: {
+                    int offset = ((code[ip++] & 0xff) << 8) | (code[ip++] & 0xff);
+                    if (!Interpreter.isTruthy(stack[stackTop - 1])) ip += offset;
+                    break;
+                }
+                case OpCode.LOOP: {
+                    int offset = ((code[ip++] & 0xff) << 8) | (code[ip++] & 0xff);
+                    ip -= offset;
+                    break;
+                }
+                case OpCode.CALL:
+                case OpCode.TAIL_CALL: {
+                    int argCount = ((code[ip++] & 0xff) << 8) | (code[ip++] & 0xff);
+                    Object callee = stack[stackTop - 1 - argCount];
+
+                    if (callee instanceof VmClosure) {
+                        VmClosure closure = (VmClosure)callee;
+                        if (argCount != closure.function.arity) {
+                            throw error(frame, start, "Expected " +
+                                closure.function.arity + " arguments but got " +
+                                argCount + ".");
+                        }
+
+                        // A tail call runs in place of the current call, so only the
+                        // result of the call that started the frame is memoized
+                        MemoCache cache = closure.function.cache;
+                        List<Object> arguments = null;
+                        if (cache != null && code[start] == OpCode.CALL) {
+                            arguments = Arrays.asList(Arrays.copyOfRange(
+                                stack, stackTop - argCount, stackTop));
+
+                            Object result = cache.get(arguments);
+                            if (result != MemoCache.MISS) {
+                                popN(argCount + 1);
+                                push(result);
+                                break;
+                            }
+                        }
+
+                        // Parameters occupy the first slots of the frame
+                        Environment callEnvironment =
+                            new Environment(closure.closure, closure.function.frameSize);
+                        System.arraycopy(stack, stackTop - argCount,
+                                         callEnvironment.slots, 0, argCount);
+                        popN(argCount + 1);
+
+                        // A tail call reuses the caller's CallFrame, so its RETURN is skipped
+                        if (code[start] == OpCode.TAIL_CALL) {
+                            frame.function = closure.function;
+                            frame.environment = callEnvironment;
+                        } else {
+                            frame.ip = ip;
+                            frame.environment = environment;
+                            frame = pushFrame(closure.function, callEnvironment, frame.function.chunk.tokens[start]);
+                            if (arguments != null) {
+                                frame.cache = cache;
+                                frame.arguments = arguments;
+                            }
+                        }
+                        code = frame.function.chunk.code;
+                        constants = frame.function.chunk.constants;
+                        environment = callEnvironment;
+                        ip = 0;
+                    } else if (callee instanceof CynchCallable) {
+                        CynchCallable function = (CynchCallable)callee;
+                        if (argCount != function.arity()) {
+                            throw error(frame, start, "Expected " +
+                                function.arity() + " arguments but got " +
+                                argCount + ".");
+                        }
+
+                        List<Object> arguments = new ArrayList<>(argCount);
+                        for (int i = stackTop - argCount; i < stackTop; i++) {
+                            arguments.add(stack[i]);
+                        }
+                        popN(argCount + 1);
+
+                        // Natives never touch the tree-walking interpreter
+                        push(Interpreter.callNative(function, null, arguments,
+                                                    frame.function.chunk.tokens[start]));
+                    } else {
+                        throw error(frame, start, "Can only call functions and classes.");
+                    }
+                    break;
+                }
+                case OpCode.SPAWN: {
+                    int argCount = ((code[ip++] & 0xff) << 8) | (code[ip++] & 0xff);
+                    Object callee = stack[stackTop - 1 - argCount];
+                    Token call = frame.function.chunk.tokens[start];
+
+                    int arity;
+                    if (callee instanceof VmClosure) {
+                        arity = ((VmClosure)callee).function.arity;
+                    } else if (callee instanceof CynchCallable) {
+                        arity = ((CynchCallable)callee).arity();
+                    } else {
+                        throw error(frame, start, "Can only call functions and classes.");
+                    }
+
+                    if (argCount != arity) {
+                        throw error(frame, start, "Expected " +
+                            arity + " arguments but got " +
+                            argCount + ".");
+                    }
+
+                    List<Object> arguments = new ArrayList<>(argCount);
+                    for (int i = stackTop - argCount; i < stackTop; i++) {
+                        arguments.add(stack[i]);
+                    }
+                    popN(argCount + 1);
+
+                    // The call runs on a VM of its own, which shares the globals
+                    if (callee instanceof VmClosure) {
+                        VM vm = new VM(this);
+                        push(CynchFuture.spawn(() -> vm.call((VmClosure)callee, arguments)));
+                    } else {
+                        CynchCallable function = (CynchCallable)callee;
+                        push(CynchFuture.spawn(() ->
+                            Interpreter.callNative(function, null, arguments, call)));
+                    }
+                    break;
+                }
+                case OpCode.AWAIT:
+                    push(CynchFuture.await(pop(), frame.function.chunk.tokens[start]));
+                    break;
+                case OpCode.ARRAY: {
+                    int count = ((code[ip++] & 0xff) << 8) | (code[ip++] & 0xff);
+                    CynchArray array = new CynchArray(count);
+                    for (int i = stackTop - count; i < stackTop; i++) {
+                        array.push(stack[i]);
+                    }
+                    popN(count);
+                    push(array);
+                    break;
+                }
+                case OpCode.MAP: {
+                    int count = ((code[ip++] & 0xff) << 8) | (code[ip++] & 0xff);
+                    Token brace = frame.function.chunk.tokens[start];
+                    CynchMap map = new CynchMap(count);
+                    for (int i = stackTop - 2 * count; i < stackTop; i += 2) {
+                        map.put(CynchMap.checkKey(stack[i], brace), stack[i + 1]);
+                    }
+                    popN(2 * count);
+                    push(map);
+                    break;
+                }
+                case OpCode.GET_INDEX: {
+                    Object index = pop();
+                    Object object = pop();
+                    push(Interpreter.getIndex(object, index, frame.function.chunk.tokens[start]));
+                    break;
+                }
+                case OpCode.SET_INDEX: {
+                    Object value = pop();
+                    Object index = pop();
+                    Object object = pop();
+                    Interpreter.setIndex(object, index, value, frame.function.chunk.tokens[start]);
+                    push(value);
+                    break;
+                }
+                case OpCode.CLOSURE: {
+                    int index = ((code[ip++] & 0xff) << 8) | (code[ip++] & 0xff);
+                    push(new VmClosure((VmFunction)constants[index], environment));
+                    break;
+                }
+                case OpCode.RETURN: {
+                    Object result = pop();
+                    CallFrame returning = frames[--frameCount];
+                    if (returning.cache != null) {
+                        returning.cache.put(returning.arguments, result);
+                        returning.cache = null;
+                        returning.arguments = null;
+                    }
+
+                    returning.environment = null;
+                    if (frameCount == 0) return result;
+
+                    frame = frames[frameCount - 1];
+                    code = frame.function.chunk.code;
+                    constants = frame.function.chunk.constants;
+                    environment = frame.environment;
+                    ip = frame.ip;
+                    push(result);
+                    break;
+                }
+
+                case OpCode.PUSH_SCOPE: {
+                    int size = ((code[ip++] & 0xff) << 8) | (code[ip++] & 0xff);
+                    environment = new Environment(environment, size);
+                    break;
+                }
+                case OpCode.POP_SCOPE:
+                    environment = environment.enclosing;
+                    break;
+
+                default:
+                    throw error(frame, start, "Unknown instruction " + code[start] + ".");
+            }
+        }
+    }
+
+    private CallFrame pushFrame(VmFunction function, Environment environment, Token call) {
+        if (frameCount == FRAMES_MAX) {
+            throw new RuntimeError(call, "Stack overflow.");
+        }
+
+        if (frameCount == frames.length) {
+            frames = Arrays.copyOf(frames, frameCount * 2);
+        }
+
+        CallFrame frame = frames[frameCount];
+        if (frame == null) {
+            frame = new CallFrame();
+            frames[frameCount] = frame;
+        }
+        frameCount++;
+
+        frame.function = function;
+        frame.ip = 0;
+        frame.environment = environment;
+        frame.cache = null;
+        frame.arguments = null;
+        return frame;
+    }
+
+    private void push(Object value) {
+        if (stackTop == stack.length) {
+            stack = Arrays.copyOf(stack, stackTop * 2);
+        }
+
+        stack[stackTop++] = value;
+    }
+
+    private Object pop() {
+        Object value = stack[--stackTop];
+        stack[stackTop] = null;
+        return value;
+    }
+
+    private void popN(int count) {
+        Arrays.fill(stack, stackTop - count, stackTop, null);
+        stackTop -= count;
+    }
+
+    // PLUS adds numbers and concatenates strings, just like in the Interpreter
+    private Object add(CallFrame frame, int start, Object a, Object b) {
+        if (a instanceof Double && b instanceof Double) {
+            return (double)a + (double)b;
+        }
+
+        if (a instanceof CharSequence && b instanceof CharSequence) {
+            return LazyString.concat(a, b);
+        }
+
+        if (a instanceof Double && b instanceof CharSequence ||
+            a instanceof CharSequence && b instanceof Double) {
+            return LazyString.concat(a, b);
+        }
+
+        throw error(frame, start, "Operands must be numbers or strings.");
+    }
+
+    private void checkNumberOperands(CallFrame frame, int start, Object a, Object b) {
+        if (a instanceof Double && b instanceof Double) return;
+
+        throw error(frame, start, "Operands must be numbers.");
+    }
+
+    // Errors are reported at the token the failing instruction was compiled from
+    private RuntimeError error(CallFrame frame, int start, String message) {
+        return new RuntimeError(frame.function.chunk.tokens[start], message);
+    }
+}
@@ -0,0 +1,18 @@
+package main.java;
+
+// A function value created at runtime by the VM
+// Like CynchFunction, it holds on to the environment it was declared in
+class VmClosure {
+    final VmFunction function;
+    final Environment closure;
+
+    VmClosure(VmFunction function, Environment closure) {
+        this.function = function;
+        this.closure = closure;
+    }
+
+    @Override
+    public String toString() {
+        return function.toString();
+    }
+}
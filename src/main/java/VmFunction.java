@@ -0,0 +1,23 @@
+package main.java;
+
+// The compiled form of a function declaration (or of the top-level script)
+class VmFunction {
+    final String name;
+    final int arity;
+    final int frameSize;
+    final MemoCache cache;
+    final Chunk chunk = new Chunk();
+
+    VmFunction(String name, int arity, int frameSize, MemoCache cache) {
+        this.name = name;
+        this.arity = arity;
+        this.frameSize = frameSize;
+        this.cache = cache;
+    }
+
+    @Override
+    public String toString() {
+        if (name == null) return "<script>";
+        return "<fn " + name + ">";
+    }
+}
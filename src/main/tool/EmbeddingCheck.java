@@ -0,0 +1,174 @@
+package main.tool;
+
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import main.java.CynchContext;
+import main.java.CynchException;
+import main.java.CynchScript;
+import main.java.ScriptRunner;
+
+// Runs one compiled script in many contexts through the public API, one after
+// another and concurrently, on every engine, and checks that no context sees
+// the globals or the output of another
+// Exits with 1 if a check fails.
+public class EmbeddingCheck {
+    // Adds the context's 'id' to its 'count', through a function declared
+    // by the script, so that call sites and globals are both exercised
+    private static final String SCRIPT =
+        "fun step(x) { return x + id; }\n" +
+        "count = step(count);\n" +
+        "print count;\n";
+
+    private static final int CONTEXTS = 8;
+    private static final int RUNS = 200;
+
+    private static int failures = 0;
+
+    public static void main(String[] args) throws Exception {
+        CynchScript script = CynchScript.compile(SCRIPT);
+
+        for (CynchContext.Engine engine : CynchContext.Engine.values()) {
+            sequential(script, engine);
+            concurrent(script, engine);
+        }
+
+        errors();
+        runner();
+
+        if (failures > 0) {
+            System.err.println("[embedding] " + failures + " checks failed");
+            System.exit(1);
+        }
+        System.out.println("[embedding] all checks passed");
+    }
+
+    // Two contexts take turns running the script
+    private static void sequential(CynchScript script, CynchContext.Engine engine)
+            throws CynchException {
+        StringWriter first = new StringWriter();
+        StringWriter second = new StringWriter();
+        CynchContext a = context(first, engine, 1);
+        CynchContext b = context(second, engine, 10);
+
+        for (int i = 0; i < RUNS; i++) {
+            a.run(script);
+            b.run(script);
+        }
+
+        expect(engine + " sequential, first context", first.toString(), counts(1, RUNS));
+        expect(engine + " sequential, second context", second.toString(), counts(10, RUNS));
+    }
+
+    // Every context runs the script on a thread of its own
+    private static void concurrent(CynchScript script, CynchContext.Engine engine)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CONTEXTS);
+        try {
+            List<Future<String>> outputs = new ArrayList<>();
+            for (int id = 1; id <= CONTEXTS; id++) {
+                int contextId = id;
+                outputs.add(executor.submit(() -> {
+                    StringWriter out = new StringWriter();
+                    CynchContext context = context(out, engine, contextId);
+                    for (int i = 0; i < RUNS; i++) {
+                        context.run(script);
+                    }
+                    return out.toString();
+                }));
+            }
+
+            for (int id = 1; id <= CONTEXTS; id++) {
+                expect(engine + " concurrent, context " + id, outputs.get(id - 1).get(),
+                       counts(id, RUNS));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // A failing run reports its errors without touching another context
+    private static void errors() throws CynchException {
+        CynchScript failing = CynchScript.compile("print missing;");
+        CynchScript script = CynchScript.compile(SCRIPT);
+
+        StringWriter out = new StringWriter();
+        CynchContext good = context(out, CynchContext.Engine.TREE, 1);
+        CynchContext bad = new CynchContext(new StringWriter());
+
+        try {
+            bad.run(failing);
+            fail("running an undefined variable did not throw");
+        } catch (CynchException error) {
+            expect("runtime error", error.errors().toString(),
+                   "[[line 1] Undefined variable 'missing'.]");
+        }
+        good.run(script);
+        expect("context next to a failing one", out.toString(), counts(1, 1));
+
+        try {
+            CynchScript.compile("print ;");
+            fail("a syntax error did not throw");
+        } catch (CynchException error) {
+            expect("compile error", error.errors().toString(),
+                   "[[line 1] Error at ';': Expect expression.]");
+        }
+    }
+
+    // Executions of one file with different parameters
+    private static void runner() throws Exception {
+        Path file = Files.createTempFile("embedding", ".cy");
+        try {
+            Files.writeString(file, SCRIPT);
+
+            List<Future<ScriptRunner.Result>> results = new ArrayList<>();
+            try (ScriptRunner runner = new ScriptRunner(CynchContext.Engine.TREE, 16)) {
+                for (int id = 1; id <= CONTEXTS; id++) {
+                    results.add(runner.submit(file, Map.of("id", id, "count", 0)));
+                }
+            }
+
+            for (int id = 1; id <= CONTEXTS; id++) {
+                ScriptRunner.Result result = results.get(id - 1).get();
+                expect("runner, execution " + id, result.output + result.errors,
+                       counts(id, 1) + "[]");
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static CynchContext context(StringWriter out, CynchContext.Engine engine, int id) {
+        CynchContext context = new CynchContext(out, engine);
+        context.define("id", id);
+        context.define("count", 0);
+        return context;
+    }
+
+    // What 'runs' runs of the script print in a context with the given id
+    private static String counts(int id, int runs) {
+        StringBuilder counts = new StringBuilder();
+        for (int i = 1; i <= runs; i++) {
+            counts.append(i * id).append(System.lineSeparator());
+        }
+        return counts.toString();
+    }
+
+    private static void expect(String check, String actual, String expected) {
+        if (!actual.equals(expected)) {
+            fail(check + ": expected\n" + expected + "but got\n" + actual);
+        }
+    }
+
+    private static void fail(String message) {
+        System.err.println("[embedding] " + message);
+        failures++;
+    }
+}
@@ -15,26 +15,40 @@ public class GenerateAst {
         String outputDir = args[0];
 
         defineAst(outputDir, "Expr", Arrays.asList(
-            "Assign     : Token name, Expr value",
+            "Array      : Token bracket, List<Expr> elements",
+            "Assign     : Token name, Expr value | int depth = -1, int slot," +
+                        " int index = -1, int upvalue = -1, int global = -1",
+            "Await      : Token keyword, Expr value",
             "Binary     : Expr left, Token operator, Expr right",
-            "Call       : Expr callee, Token paren, List<Expr> arguments",
+            "Call       : Expr callee, Token paren, List<Expr> arguments | int site",
             "Grouping   : Expr expression",
+            "Index      : Expr object, Token bracket, Expr index",
             "Literal    : Object value",
             "Logical    : Expr left, Token operator, Expr right",
+            "Map        : Token brace, List<Expr> keys, List<Expr> values",
+            "SetIndex   : Expr object, Token bracket, Expr index, Expr value",
+            "Spawn      : Token keyword, Call call",
             "Unary      : Token operator, Expr right",
-            "Variable   : Token name"
+            "Variable   : Token name | int depth = -1, int slot," +
+                        " int index = -1, int upvalue = -1, int global = -1"
         ));
 
         defineAst(outputDir, "Stmt", Arrays.asList(
-            "Block          : List<Stmt> statements",
+            "Block          : List<Stmt> statements | int frameSize, int callSites," +
+                            " List<String> globals",
             "Break          : ",
             "Expression     : Expr expression",
+            "For            : Stmt initializer, Expr condition, Expr increment," +
+                            " Stmt body | int frameSize, boolean counted",
             "If             : Expr condition, Stmt thenBranch, Stmt elseBranch",
             "Function       : Token name, List<Token> params," + 
-                            " List<Stmt> body",
+                            " List<Stmt> body, Token memo | int slot = -1, int frameSize," +
+                            " int index = -1, boolean captured, int localCount," +
+                            " boolean[] capturedParams, int[] captures, int memoIndex = -1",
             "Print          : Expr expression",
-            "Return         : Token keyword, Expr value",
-            "Var            : Token name, Expr initializer",
+            "Return         : Token keyword, Expr value | boolean tailCall",
+            "Var            : Token name, Expr initializer | int slot = -1," +
+                            " int index = -1, boolean captured",
             "While          : Expr condition, Stmt body"
         ));
     }
@@ -57,8 +71,12 @@ public class GenerateAst {
 
         for (String type : types) {
             String className = type.split(":")[0].trim();
-            String fields = type.split(":")[1].trim();
-            defineType(writer, baseName, className, fields);
+            String fields = type.split(":")[1].split("\\|")[0].trim();
+            String resolved = "";
+            if (type.contains("|")) {
+                resolved = type.split("\\|")[1].trim();
+            }
+            defineType(writer, baseName, className, fields, resolved);
         }
 
         // The base accept() method
@@ -69,9 +87,11 @@ public class GenerateAst {
         writer.close();
     }
 
+    // Fields after the '|' in a type are not passed to the constructor,
+    // they are filled in later by the Resolver
     private static void defineType(
         PrintWriter writer, String baseName,
-        String className, String fieldList) {
+        String className, String fieldList, String resolvedList) {
       writer.println("  static class " + className + " extends " +
           baseName + " {");
   
@@ -105,6 +125,14 @@ public class GenerateAst {
       for (String field : fields) {
         writer.println("    final " + field + ";");
       }
+
+      if (!resolvedList.isEmpty()) {
+        writer.println();
+        writer.println("    // Resolution data");
+        for (String field : resolvedList.split(", ")) {
+          writer.println("    " + field + ";");
+        }
+      }
   
       writer.println("  }");
     }